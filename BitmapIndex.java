@@ -0,0 +1,417 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+// Index of items by enum-valued attributes (category, priority, ...).
+// Items get dense ordinals and every enum constant keeps a bitmap of the items
+// that have it, so filters combine with AND/OR over bitmaps instead of scanning the items.
+// The constants an item was filed under are remembered, so items changed in place can be
+// re-filed with update().
+class BitmapIndex<T> {
+    private final List<Function<T, ? extends Enum<?>>> attributes = new ArrayList<>();
+    private final Map<Enum<?>, Bitmap> bitmaps = new HashMap<>();
+    private final Map<T, Entry> entries = new IdentityHashMap<>();
+    private final List<T> items = new ArrayList<>();
+    private int[] free = new int[16];
+    private int freeCount;
+
+    @SafeVarargs
+    BitmapIndex(Function<T, ? extends Enum<?>>... attributes) {
+        for (Function<T, ? extends Enum<?>> attribute : attributes) this.attributes.add(attribute);
+    }
+
+    public void add(T item) {
+        if (entries.containsKey(item)) return;
+        int ordinal;
+        if (freeCount > 0) {
+            ordinal = free[--freeCount];
+            items.set(ordinal, item);
+        } else {
+            ordinal = items.size();
+            items.add(item);
+        }
+        Enum<?>[] values = new Enum<?>[attributes.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = attributes.get(i).apply(item);
+            if (values[i] != null) bitmaps.computeIfAbsent(values[i], k -> new Bitmap()).add(ordinal);
+        }
+        entries.put(item, new Entry(ordinal, values));
+    }
+
+    public boolean remove(T item) {
+        Entry entry = entries.remove(item);
+        if (entry == null) return false;
+        for (Enum<?> value : entry.values) {
+            if (value != null) bitmaps.get(value).remove(entry.ordinal);
+        }
+        items.set(entry.ordinal, null);
+        if (freeCount == free.length) free = Arrays.copyOf(free, freeCount * 2);
+        free[freeCount++] = entry.ordinal;
+        return true;
+    }
+
+    public void update(T item) {
+        if (remove(item)) add(item);
+    }
+
+    public void clear() {
+        bitmaps.clear();
+        entries.clear();
+        items.clear();
+        freeCount = 0;
+    }
+
+    // The items having one of the values of each non-empty set, so a filter such as
+    // (HIGH) AND (WORK OR SOCIAL) is one set per attribute; all items if every set is empty
+    public Bitmap matching(List<? extends Collection<? extends Enum<?>>> filters) {
+        Bitmap result = null;
+        for (Collection<? extends Enum<?>> values : filters) {
+            if (values.isEmpty()) continue;
+            Bitmap any = anyOf(values);
+            result = result == null ? any : result.and(any);
+        }
+        return result == null ? all() : result;
+    }
+
+    // The items having any of the values; all items when there are none
+    public Bitmap anyOf(Collection<? extends Enum<?>> values) {
+        if (values.isEmpty()) return all();
+        Bitmap result = new Bitmap();
+        for (Enum<?> value : values) {
+            Bitmap bitmap = bitmaps.get(value);
+            if (bitmap != null) result = result.or(bitmap);
+        }
+        return result;
+    }
+
+    public Bitmap all() {
+        Bitmap result = new Bitmap();
+        for (int ordinal = 0; ordinal < items.size(); ordinal++) {
+            if (items.get(ordinal) != null) result.add(ordinal);
+        }
+        return result;
+    }
+
+    public List<T> items(Bitmap bitmap) {
+        List<T> result = new ArrayList<>(bitmap.cardinality());
+        bitmap.forEach(ordinal -> result.add(items.get(ordinal)));
+        return result;
+    }
+
+    public boolean contains(Bitmap bitmap, T item) {
+        Entry entry = entries.get(item);
+        return entry != null && bitmap.contains(entry.ordinal);
+    }
+
+    // The given items that are in the bitmap, in their order; for combining with range lookups
+    public List<T> retain(List<T> candidates, Bitmap bitmap) {
+        List<T> result = new ArrayList<>();
+        for (T item : candidates) {
+            if (contains(bitmap, item)) result.add(item);
+        }
+        return result;
+    }
+
+    private static class Entry {
+        final int ordinal;
+        final Enum<?>[] values;
+
+        Entry(int ordinal, Enum<?>[] values) {
+            this.ordinal = ordinal;
+            this.values = values;
+        }
+    }
+
+    // Compressed set of ordinals. Ordinals are split into chunks of 65536 by their upper 16 bits;
+    // a chunk is a sorted array of its lower bits while it is sparse and a plain bitset once it
+    // holds more than 4096 of them, so neither sparse nor dense sets waste much space.
+    static class Bitmap {
+        private static final int ARRAY_LIMIT = 4096;
+
+        private char[] keys = new char[0];
+        private Chunk[] chunks = new Chunk[0];
+        private int size;
+
+        void add(int ordinal) {
+            int at = find((char) (ordinal >>> 16));
+            if (at < 0) {
+                at = -at - 1;
+                insertChunk(at, (char) (ordinal >>> 16), new ArrayChunk());
+            }
+            chunks[at] = chunks[at].add((char) ordinal);
+        }
+
+        void remove(int ordinal) {
+            int at = find((char) (ordinal >>> 16));
+            if (at < 0) return;
+            chunks[at] = chunks[at].remove((char) ordinal);
+            if (chunks[at].cardinality() == 0) {
+                System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+                System.arraycopy(chunks, at + 1, chunks, at, size - at - 1);
+                chunks[--size] = null;
+            }
+        }
+
+        public boolean contains(int ordinal) {
+            int at = find((char) (ordinal >>> 16));
+            return at >= 0 && chunks[at].contains((char) ordinal);
+        }
+
+        public int cardinality() {
+            int total = 0;
+            for (int i = 0; i < size; i++) total += chunks[i].cardinality();
+            return total;
+        }
+
+        public Bitmap and(Bitmap other) {
+            Bitmap result = new Bitmap();
+            int i = 0, j = 0;
+            while (i < size && j < other.size) {
+                if (keys[i] < other.keys[j]) {
+                    i++;
+                } else if (keys[i] > other.keys[j]) {
+                    j++;
+                } else {
+                    Chunk chunk = chunks[i].and(other.chunks[j]);
+                    if (chunk.cardinality() > 0) result.appendChunk(keys[i], chunk);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        public Bitmap or(Bitmap other) {
+            Bitmap result = new Bitmap();
+            int i = 0, j = 0;
+            while (i < size || j < other.size) {
+                if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                    result.appendChunk(keys[i], chunks[i].copy());
+                    i++;
+                } else if (i == size || keys[i] > other.keys[j]) {
+                    result.appendChunk(other.keys[j], other.chunks[j].copy());
+                    j++;
+                } else {
+                    result.appendChunk(keys[i], chunks[i].or(other.chunks[j]));
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        // Visits the ordinals in increasing order
+        public void forEach(IntConsumer action) {
+            for (int i = 0; i < size; i++) chunks[i].forEach(keys[i] << 16, action);
+        }
+
+        private int find(char key) {
+            return Arrays.binarySearch(keys, 0, size, key);
+        }
+
+        private void insertChunk(int at, char key, Chunk chunk) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(4, size * 2));
+                chunks = Arrays.copyOf(chunks, keys.length);
+            }
+            System.arraycopy(keys, at, keys, at + 1, size - at);
+            System.arraycopy(chunks, at, chunks, at + 1, size - at);
+            keys[at] = key;
+            chunks[at] = chunk;
+            size++;
+        }
+
+        private void appendChunk(char key, Chunk chunk) {
+            insertChunk(size, key, chunk);
+        }
+
+        private interface Chunk {
+            // add and remove return the chunk to keep, which may have changed representation
+            Chunk add(char low);
+            Chunk remove(char low);
+            boolean contains(char low);
+            int cardinality();
+            Chunk and(Chunk other);
+            Chunk or(Chunk other);
+            Chunk copy();
+            void forEach(int high, IntConsumer action);
+        }
+
+        private static class ArrayChunk implements Chunk {
+            char[] values = new char[4];
+            int size;
+
+            @Override
+            public Chunk add(char low) {
+                int at = Arrays.binarySearch(values, 0, size, low);
+                if (at >= 0) return this;
+                if (size == ARRAY_LIMIT) return toBits().add(low);
+                at = -at - 1;
+                if (size == values.length) values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, size * 2));
+                System.arraycopy(values, at, values, at + 1, size - at);
+                values[at] = low;
+                size++;
+                return this;
+            }
+
+            @Override
+            public Chunk remove(char low) {
+                int at = Arrays.binarySearch(values, 0, size, low);
+                if (at < 0) return this;
+                System.arraycopy(values, at + 1, values, at, size - at - 1);
+                size--;
+                return this;
+            }
+
+            @Override
+            public boolean contains(char low) {
+                return Arrays.binarySearch(values, 0, size, low) >= 0;
+            }
+
+            @Override
+            public int cardinality() { return size; }
+
+            @Override
+            public Chunk and(Chunk other) {
+                ArrayChunk result = new ArrayChunk();
+                result.values = new char[Math.max(4, size)];
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(values[i])) result.values[result.size++] = values[i];
+                }
+                return result;
+            }
+
+            @Override
+            public Chunk or(Chunk other) {
+                if (other instanceof BitsChunk) {
+                    Chunk result = other.copy();
+                    for (int i = 0; i < size; i++) result.add(values[i]);
+                    return result;
+                }
+                ArrayChunk that = (ArrayChunk) other;
+                ArrayChunk result = new ArrayChunk();
+                result.values = new char[Math.max(4, size + that.size)];
+                int i = 0, j = 0;
+                while (i < size || j < that.size) {
+                    char next;
+                    if (j == that.size || (i < size && values[i] < that.values[j])) {
+                        next = values[i++];
+                    } else if (i == size || values[i] > that.values[j]) {
+                        next = that.values[j++];
+                    } else {
+                        next = values[i++];
+                        j++;
+                    }
+                    result.values[result.size++] = next;
+                }
+                return result.size > ARRAY_LIMIT ? result.toBits() : result;
+            }
+
+            @Override
+            public Chunk copy() {
+                ArrayChunk result = new ArrayChunk();
+                result.values = Arrays.copyOf(values, Math.max(4, size));
+                result.size = size;
+                return result;
+            }
+
+            @Override
+            public void forEach(int high, IntConsumer action) {
+                for (int i = 0; i < size; i++) action.accept(high | values[i]);
+            }
+
+            BitsChunk toBits() {
+                BitsChunk bits = new BitsChunk();
+                for (int i = 0; i < size; i++) bits.add(values[i]);
+                return bits;
+            }
+        }
+
+        private static class BitsChunk implements Chunk {
+            final long[] words = new long[1024];
+            int cardinality;
+
+            @Override
+            public Chunk add(char low) {
+                long bit = 1L << low;
+                if ((words[low >>> 6] & bit) == 0) {
+                    words[low >>> 6] |= bit;
+                    cardinality++;
+                }
+                return this;
+            }
+
+            @Override
+            public Chunk remove(char low) {
+                long bit = 1L << low;
+                if ((words[low >>> 6] & bit) != 0) {
+                    words[low >>> 6] &= ~bit;
+                    cardinality--;
+                }
+                return cardinality <= ARRAY_LIMIT / 2 ? toArray() : this;
+            }
+
+            @Override
+            public boolean contains(char low) {
+                return (words[low >>> 6] & (1L << low)) != 0;
+            }
+
+            @Override
+            public int cardinality() { return cardinality; }
+
+            @Override
+            public Chunk and(Chunk other) {
+                if (other instanceof ArrayChunk) return other.and(this);
+                BitsChunk result = new BitsChunk();
+                long[] otherWords = ((BitsChunk) other).words;
+                for (int i = 0; i < words.length; i++) {
+                    result.words[i] = words[i] & otherWords[i];
+                    result.cardinality += Long.bitCount(result.words[i]);
+                }
+                return result.cardinality <= ARRAY_LIMIT ? result.toArray() : result;
+            }
+
+            @Override
+            public Chunk or(Chunk other) {
+                if (other instanceof ArrayChunk) return other.or(this);
+                BitsChunk result = new BitsChunk();
+                long[] otherWords = ((BitsChunk) other).words;
+                for (int i = 0; i < words.length; i++) {
+                    result.words[i] = words[i] | otherWords[i];
+                    result.cardinality += Long.bitCount(result.words[i]);
+                }
+                return result;
+            }
+
+            @Override
+            public Chunk copy() {
+                BitsChunk result = new BitsChunk();
+                System.arraycopy(words, 0, result.words, 0, words.length);
+                result.cardinality = cardinality;
+                return result;
+            }
+
+            @Override
+            public void forEach(int high, IntConsumer action) {
+                for (int i = 0; i < words.length; i++) {
+                    for (long bits = words[i]; bits != 0; bits &= bits - 1) {
+                        action.accept(high | (i << 6) | Long.numberOfTrailingZeros(bits));
+                    }
+                }
+            }
+
+            ArrayChunk toArray() {
+                ArrayChunk array = new ArrayChunk();
+                array.values = new char[Math.max(4, cardinality)];
+                forEach(0, low -> array.values[array.size++] = (char) low);
+                return array;
+            }
+        }
+    }
+}
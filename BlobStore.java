@@ -0,0 +1,251 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// Large text kept out of the resident event metadata. The
+// descriptions of a segment are written as CompressedBlocks frames to a blob file next to it
+// and referenced by frame offset; they are read on first access and held in a small LRU cache
+// rather than on the events. Every save writes a new blob generation, and a generation read
+// from is kept for the rest of the run because events refer into it. The writer removes the
+// other old generations once the segment naming the new one is on disk; readers never remove
+// anything, so a read racing a save cannot take away the generation the save just wrote.
+class BlobStore {
+    private static final String EXTENSION = ".blob";
+    private static final int CACHE_ENTRIES = 256;
+    private static final int OPEN_FILES = 8;
+
+    private static final Set<File> opened = new HashSet<>();
+
+    private static final Map<Ref, String> cache = new LinkedHashMap<Ref, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Ref, String> eldest) {
+            return size() > CACHE_ENTRIES;
+        }
+    };
+
+    // Read channels kept open between lookups, so indexing a segment's descriptions does not
+    // reopen its blob file for every event
+    private static final Map<File, FileChannel> channels = new LinkedHashMap<File, FileChannel>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, FileChannel> eldest) {
+            if (size() <= OPEN_FILES) return false;
+            close(eldest.getValue());
+            return true;
+        }
+    };
+
+    static final class Ref {
+        final File file;
+        final long offset;
+
+        Ref(File file, long offset) {
+            this.file = file.getAbsoluteFile();
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Ref)) return false;
+            Ref other = (Ref) o;
+            return offset == other.offset && file.equals(other.file);
+        }
+
+        @Override
+        public int hashCode() { return file.hashCode() * 31 + Long.hashCode(offset); }
+    }
+
+    static String get(Ref ref) {
+        synchronized (cache) {
+            String text = cache.get(ref);
+            if (text != null) return text;
+        }
+        String text = read(ref);
+        synchronized (cache) {
+            cache.put(ref, text);
+        }
+        return text;
+    }
+
+    // Reads the text without caching it, for bulk readers such as the search index that
+    // would otherwise push the descriptions being viewed out of the cache
+    static String peek(Ref ref) {
+        synchronized (cache) {
+            String text = cache.get(ref);
+            if (text != null) return text;
+        }
+        return read(ref);
+    }
+
+    private static String read(Ref ref) {
+        try {
+            synchronized (channels) {
+                FileChannel channel = channels.get(ref.file);
+                if (channel == null) {
+                    channel = FileChannel.open(ref.file.toPath(), StandardOpenOption.READ);
+                    channels.put(ref.file, channel);
+                }
+                return new String(CompressedBlocks.readFrame(channel, ref.offset), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading " + ref.file.getName() + ": " + e.getMessage());
+            return "";
+        }
+    }
+
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing was written through it
+        }
+    }
+
+    // Writes the text of every item to a new blob generation of the segment and returns it,
+    // or 0 if there is no text at all. Items still referencing a blob are copied over without
+    // going through the cache; offsets receives -1 for empty text, which is not stored.
+    static <T> long write(File segment, List<T> items, Function<T, Ref> refs, Function<T, String> texts,
+            long[] offsets) throws IOException {
+        Arrays.fill(offsets, -1);
+        boolean hasText = false;
+        for (T item : items) {
+            if (refs.apply(item) != null || !isEmpty(texts.apply(item))) {
+                hasText = true;
+                break;
+            }
+        }
+        if (!hasText) return 0;
+        long generation = nextGeneration(segment);
+        DurableWriter.shared().writeAndWait(file(segment, generation).toPath(), channel -> {
+            try (Writer out = new Writer(channel)) {
+                for (int i = 0; i < items.size(); i++) {
+                    Ref ref = refs.apply(items.get(i));
+                    offsets[i] = out.add(ref, ref == null ? texts.apply(items.get(i)) : null);
+                }
+            }
+        });
+        return generation;
+    }
+
+    static File file(File segment, long generation) {
+        return new File(segment.getParentFile(), segment.getName() + "." + generation + EXTENSION);
+    }
+
+    static long nextGeneration(File segment) {
+        long latest = 0;
+        for (long generation : generations(segment).keySet()) {
+            latest = Math.max(latest, generation);
+        }
+        return latest + 1;
+    }
+
+    // The generation a segment header names, kept from now on since the events read will refer
+    // into it
+    static File open(File segment, long generation) {
+        File blob = file(segment, generation).getAbsoluteFile();
+        synchronized (opened) {
+            opened.add(blob);
+        }
+        return blob;
+    }
+
+    // Removes every generation of the segment but the given one and those read from in this run;
+    // only for the writer, once the segment naming that generation is durably written, and at
+    // startup. 0 keeps none, for a segment that is gone.
+    static void retain(File segment, long generation) {
+        synchronized (opened) {
+            for (Map.Entry<Long, File> entry : generations(segment).entrySet()) {
+                if (entry.getKey() != generation && !opened.contains(entry.getValue().getAbsoluteFile())) {
+                    delete(entry.getValue());
+                }
+            }
+        }
+    }
+
+    // Generation numbers can be used again once a file is gone, so its cached text goes too
+    static void delete(File blob) {
+        File absolute = blob.getAbsoluteFile();
+        synchronized (cache) {
+            cache.keySet().removeIf(ref -> ref.file.equals(absolute));
+        }
+        synchronized (channels) {
+            FileChannel channel = channels.remove(absolute);
+            if (channel != null) close(channel);
+        }
+        blob.delete();
+    }
+
+    private static Map<Long, File> generations(File segment) {
+        Map<Long, File> generations = new HashMap<>();
+        String prefix = segment.getName() + ".";
+        File[] files = segment.getAbsoluteFile().getParentFile().listFiles();
+        if (files == null) return generations;
+        for (File f : files) {
+            String name = f.getName();
+            if (!name.startsWith(prefix) || !name.endsWith(EXTENSION)) continue;
+            try {
+                generations.put(Long.parseLong(name.substring(prefix.length(), name.length() - EXTENSION.length())), f);
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        return generations;
+    }
+
+    private static boolean isEmpty(String text) {
+        return text == null || text.isEmpty();
+    }
+
+    // The segment a blob file belongs to, or null if it is not a blob file
+    static File segmentOf(File blob) {
+        String name = blob.getName();
+        if (!name.endsWith(EXTENSION)) return null;
+        int dot = name.lastIndexOf('.', name.length() - EXTENSION.length() - 1);
+        return dot > 0 ? new File(blob.getParentFile(), name.substring(0, dot)) : null;
+    }
+
+    private static class Writer implements Closeable {
+        private final CompressedBlocks.Writer out;
+        private final Map<File, FileChannel> sources = new HashMap<>();
+
+        Writer(WritableByteChannel channel) {
+            out = new CompressedBlocks.Writer(channel);
+        }
+
+        long add(Ref ref, String text) throws IOException {
+            byte[] bytes;
+            if (ref != null) {
+                FileChannel source = sources.get(ref.file);
+                if (source == null) {
+                    source = FileChannel.open(ref.file.toPath(), StandardOpenOption.READ);
+                    sources.put(ref.file, source);
+                }
+                bytes = CompressedBlocks.readFrame(source, ref.offset);
+            } else if (isEmpty(text)) {
+                return -1;
+            } else {
+                bytes = text.getBytes(StandardCharsets.UTF_8);
+            }
+            long offset = out.position();
+            out.write(bytes, bytes.length);
+            return offset;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            for (FileChannel source : sources.values()) source.close();
+        }
+    }
+}
@@ -4,6 +4,8 @@ import java.awt.Component;
 import java.awt.Cursor;
 import java.awt.FlowLayout;
 import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.GridLayout;
@@ -13,24 +15,56 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
 import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -53,17 +87,21 @@ import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 public class CalendarApplication extends JFrame {
     private EventManager eventManager;
     private JList<Event> eventList;
-    private DefaultListModel<Event> listModel;
+    private EventListModel<Event> listModel;
     private JPanel calendarPanel;
+    private JPanel monthView;
+    private MonthDayCell[] monthCells;
     private JLabel monthYearLabel;
     private LocalDate currentViewDate;
     private JComboBox<ViewMode> viewModeCombo;
-    private javax.swing.Timer reminderTimer;
-    private Set<String> notifiedEvents = new HashSet<>();
+    private JDialog reminderDialog;
+    private DefaultListModel<String> reminderModel;
 
     enum ViewMode { MONTH, WEEK, DAY }
 
@@ -81,8 +119,9 @@ public class CalendarApplication extends JFrame {
         currentViewDate = LocalDate.now();
         
         initComponents();
+        eventManager.addLoadListener(this::updateEventList);
         loadEvents();
-        startReminderTimer();
+        eventManager.startReminders(this::showReminders);
         
         addWindowListener(new WindowAdapter() {
             @Override
@@ -160,9 +199,14 @@ public class CalendarApplication extends JFrame {
         JPanel eventListPanel = new JPanel(new BorderLayout());
         eventListPanel.setBorder(new TitledBorder("Events List"));
         
-        listModel = new DefaultListModel<>();
+        listModel = new EventListModel<>();
         eventList = new JList<>(listModel);
         eventList.setCellRenderer(new EventListCellRenderer());
+        // Rows are all three lines high, so they are measured once on this sample rather than
+        // on every event; a high priority sample has the thickest border
+        Event sample = new Event("Sample", LocalDate.now().atTime(9, 0), LocalDate.now().atTime(10, 0));
+        sample.setPriority(EventPriority.HIGH);
+        eventList.setPrototypeCellValue(sample);
         
         JScrollPane scrollPane = new JScrollPane(eventList);
         eventListPanel.add(scrollPane, BorderLayout.CENTER);
@@ -231,30 +275,41 @@ public class CalendarApplication extends JFrame {
 
     private void updateCalendarView() {
         ViewMode mode = (ViewMode) viewModeCombo.getSelectedItem();
-        calendarPanel.removeAll();
+        eventManager.ensureLoaded(YearMonth.from(currentViewDate));
         
         switch (mode) {
             case MONTH:
                 monthYearLabel.setText(currentViewDate.format(DateTimeFormatter.ofPattern("MMMM yyyy")));
-                calendarPanel.add(createMonthView(), BorderLayout.CENTER);
+                if (monthView == null) {
+                    monthView = createMonthView();
+                }
+                refreshMonthView();
+                showView(monthView);
                 break;
             case WEEK:
                 LocalDate weekStart = currentViewDate.with(DayOfWeek.MONDAY);
                 LocalDate weekEnd = weekStart.plusDays(6);
                 monthYearLabel.setText(weekStart.format(DateTimeFormatter.ofPattern("MMM d")) + 
                     " - " + weekEnd.format(DateTimeFormatter.ofPattern("MMM d, yyyy")));
-                calendarPanel.add(createWeekView(), BorderLayout.CENTER);
+                showView(createWeekView());
                 break;
             case DAY:
                 monthYearLabel.setText(currentViewDate.format(DateTimeFormatter.ofPattern("EEEE, MMMM d, yyyy")));
-                calendarPanel.add(createDayView(), BorderLayout.CENTER);
+                showView(createDayView());
                 break;
         }
-        
+    }
+    
+    // Lays out the calendar panel again only when the view actually changes
+    private void showView(JPanel view) {
+        if (calendarPanel.getComponentCount() == 1 && calendarPanel.getComponent(0) == view) return;
+        calendarPanel.removeAll();
+        calendarPanel.add(view, BorderLayout.CENTER);
         calendarPanel.revalidate();
         calendarPanel.repaint();
     }
 
+    // Built once; changing the month or the events rebinds the 42 cells in place
     private JPanel createMonthView() {
         JPanel monthPanel = new JPanel(new BorderLayout());
         
@@ -270,16 +325,22 @@ public class CalendarApplication extends JFrame {
         
         // Calendar grid
         JPanel gridPanel = new JPanel(new GridLayout(0, 7, 2, 2));
-        
-        LocalDate firstDay = currentViewDate.withDayOfMonth(1);
-        int startDayOfWeek = firstDay.getDayOfWeek().getValue() - 1;
-        
-        LocalDate displayDate = firstDay.minusDays(startDayOfWeek);
-        
-        for (int i = 0; i < 42; i++) {
-            JPanel dayPanel = createDayPanel(displayDate, displayDate.getMonth() == currentViewDate.getMonth());
-            gridPanel.add(dayPanel);
-            displayDate = displayDate.plusDays(1);
+        monthCells = new MonthDayCell[42];
+        for (int i = 0; i < monthCells.length; i++) {
+            MonthDayCell cell = new MonthDayCell();
+            cell.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    if (e.getClickCount() == 2) {
+                        showEventDialog(null, cell.getDate());
+                    } else {
+                        currentViewDate = cell.getDate();
+                        updateEventList();
+                    }
+                }
+            });
+            monthCells[i] = cell;
+            gridPanel.add(cell);
         }
         
         monthPanel.add(headerPanel, BorderLayout.NORTH);
@@ -287,62 +348,20 @@ public class CalendarApplication extends JFrame {
         
         return monthPanel;
     }
-
-    private JPanel createDayPanel(LocalDate date, boolean currentMonth) {
-        JPanel panel = new JPanel(new BorderLayout());
-        panel.setBorder(BorderFactory.createLineBorder(Color.GRAY));
-        panel.setBackground(currentMonth ? Color.WHITE : new Color(240, 240, 240));
-        
-        if (date.equals(LocalDate.now())) {
-            panel.setBackground(new Color(255, 255, 200));
-        }
+    
+    private void refreshMonthView() {
+        LocalDate firstDay = currentViewDate.withDayOfMonth(1);
+        int startDayOfWeek = firstDay.getDayOfWeek().getValue() - 1;
         
-        JLabel dayLabel = new JLabel(String.valueOf(date.getDayOfMonth()), SwingConstants.CENTER);
-        dayLabel.setFont(new Font("Arial", Font.PLAIN, 14));
-        panel.add(dayLabel, BorderLayout.NORTH);
+        LocalDate displayDate = firstDay.minusDays(startDayOfWeek);
+        IntervalIndex.DayBuckets<Event> buckets = eventManager.getEventsByDay(displayDate, 42);
+        LocalDate today = LocalDate.now();
         
-        List<Event> dayEvents = eventManager.getEventsForDate(date);
-        if (!dayEvents.isEmpty()) {
-            JPanel eventIndicator = new JPanel();
-            eventIndicator.setBackground(panel.getBackground());
-            eventIndicator.setLayout(new BoxLayout(eventIndicator, BoxLayout.Y_AXIS));
-            
-            for (int i = 0; i < Math.min(3, dayEvents.size()); i++) {
-                Event event = dayEvents.get(i);
-                JLabel eventLabel = new JLabel("• " + event.getName());
-                eventLabel.setFont(new Font("Arial", Font.PLAIN, 10));
-                eventLabel.setForeground(event.getCategory().getColor());
-                eventIndicator.add(eventLabel);
-            }
-            
-            if (dayEvents.size() > 3) {
-                JLabel moreLabel = new JLabel("+" + (dayEvents.size() - 3) + " more");
-                moreLabel.setFont(new Font("Arial", Font.ITALIC, 9));
-                eventIndicator.add(moreLabel);
-            }
-            
-            panel.add(eventIndicator, BorderLayout.CENTER);
+        for (MonthDayCell cell : monthCells) {
+            cell.bind(displayDate, displayDate.getMonth() == currentViewDate.getMonth(),
+                displayDate.equals(today), buckets.get(displayDate));
+            displayDate = displayDate.plusDays(1);
         }
-        
-        final LocalDate clickedDate = date;
-        panel.addMouseListener(new MouseAdapter() {
-            @Override
-            public void mouseClicked(MouseEvent e) {
-                if (e.getClickCount() == 2) {
-                    showEventDialog(null, clickedDate);
-                } else {
-                    currentViewDate = clickedDate;
-                    updateEventList();
-                }
-            }
-            
-            @Override
-            public void mouseEntered(MouseEvent e) {
-                panel.setCursor(new Cursor(Cursor.HAND_CURSOR));
-            }
-        });
-        
-        return panel;
     }
 
     private JPanel createWeekView() {
@@ -373,9 +392,7 @@ public class CalendarApplication extends JFrame {
         }
         
         DefaultListModel<Event> dayListModel = new DefaultListModel<>();
-        List<Event> dayEvents = eventManager.getEventsForDate(date);
-        dayEvents.sort(Comparator.comparing(Event::getStartDateTime));
-        dayEvents.forEach(dayListModel::addElement);
+        eventManager.getEventsForDate(date).forEach(dayListModel::addElement);
         
         JList<Event> dayEventList = new JList<>(dayListModel);
         dayEventList.setCellRenderer(new EventListCellRenderer());
@@ -398,12 +415,38 @@ public class CalendarApplication extends JFrame {
     }
 
     private void showEventDialog(Event event) {
+        if (event != null && event.getSeries() != null) {
+            event = chooseOccurrenceEdit(event);
+            if (event == null) return;
+        }
         showEventDialog(event, currentViewDate);
     }
+    
+    // An occurrence of a repeating event is edited on its own, which takes it out of the
+    // series, or as the whole series, or its date is skipped; null when there is nothing to edit
+    private Event chooseOccurrenceEdit(Event occurrence) {
+        Object[] options = {"This Occurrence", "Whole Series", "Skip This Date", "Cancel"};
+        int choice = JOptionPane.showOptionDialog(this,
+            "\"" + occurrence.getName() + "\" repeats. What do you want to change?", "Repeating Event",
+            JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        switch (choice) {
+            case 0:
+                return eventManager.detachOccurrence(occurrence);
+            case 1:
+                return occurrence.getSeries();
+            case 2:
+                eventManager.skipOccurrence(occurrence);
+                updateEventList();
+                updateCalendarView();
+                return null;
+            default:
+                return null;
+        }
+    }
 
     private void showEventDialog(Event event, LocalDate defaultDate) {
         JDialog dialog = new JDialog(this, event == null ? "Add Event" : "Edit Event", true);
-        dialog.setSize(500, 600);
+        dialog.setSize(500, 660);
         dialog.setLocationRelativeTo(this);
         dialog.setLayout(new BorderLayout(10, 10));
         
@@ -475,8 +518,34 @@ public class CalendarApplication extends JFrame {
         if (event != null) reminderCombo.setSelectedItem(event.getReminderTime());
         formPanel.add(reminderCombo, gbc);
         
+        // Repeat
+        RecurrenceRule rule = event != null ? event.getRecurrence() : null;
+        gbc.gridx = 0; gbc.gridy = 8; gbc.weightx = 0;
+        formPanel.add(new JLabel("Repeat:"), gbc);
+        gbc.gridx = 1; gbc.weightx = 1.0;
+        JPanel repeatPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        JComboBox<String> repeatCombo = new JComboBox<>(new String[] {"Never", "Daily", "Weekly", "Monthly"});
+        if (rule != null) repeatCombo.setSelectedIndex(rule.getFrequency().ordinal() + 1);
+        JTextField intervalField = new JTextField(rule != null ? String.valueOf(rule.getInterval()) : "1", 3);
+        repeatPanel.add(repeatCombo);
+        repeatPanel.add(new JLabel("every"));
+        repeatPanel.add(intervalField);
+        formPanel.add(repeatPanel, gbc);
+        
+        // Ends
+        gbc.gridx = 0; gbc.gridy = 9; gbc.weightx = 0;
+        formPanel.add(new JLabel("Repeat Until:"), gbc);
+        gbc.gridx = 1; gbc.weightx = 1.0;
+        JPanel endsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        JTextField untilField = new JTextField(rule != null && rule.getUntil() != null ? rule.getUntil().toString() : "", 10);
+        JTextField countField = new JTextField(rule != null && rule.getCount() > 0 ? String.valueOf(rule.getCount()) : "", 4);
+        endsPanel.add(untilField);
+        endsPanel.add(new JLabel("or times"));
+        endsPanel.add(countField);
+        formPanel.add(endsPanel, gbc);
+        
         // Description
-        gbc.gridx = 0; gbc.gridy = 8; gbc.weightx = 0; gbc.anchor = GridBagConstraints.NORTH;
+        gbc.gridx = 0; gbc.gridy = 10; gbc.weightx = 0; gbc.anchor = GridBagConstraints.NORTH;
         formPanel.add(new JLabel("Description:"), gbc);
         gbc.gridx = 1; gbc.weightx = 1.0; gbc.weighty = 1.0; gbc.fill = GridBagConstraints.BOTH;
         JTextArea descArea = new JTextArea(event != null ? event.getDescription() : "", 5, 20);
@@ -485,11 +554,32 @@ public class CalendarApplication extends JFrame {
         JScrollPane descScroll = new JScrollPane(descArea);
         formPanel.add(descScroll, gbc);
         
+        // Double-booking warning, kept current while the times are typed
+        gbc.gridx = 0; gbc.gridy = 11; gbc.gridwidth = 2; gbc.weighty = 0; gbc.fill = GridBagConstraints.HORIZONTAL;
+        JLabel conflictLabel = new JLabel(" ");
+        conflictLabel.setForeground(new Color(200, 30, 30));
+        formPanel.add(conflictLabel, gbc);
+        DocumentListener timesChanged = new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { update(); }
+            public void removeUpdate(DocumentEvent e) { update(); }
+            public void changedUpdate(DocumentEvent e) { update(); }
+            private void update() {
+                conflictLabel.setText(conflictWarning(dateField.getText(), startTimeField.getText(),
+                    endTimeField.getText(), event));
+            }
+        };
+        dateField.getDocument().addDocumentListener(timesChanged);
+        startTimeField.getDocument().addDocumentListener(timesChanged);
+        endTimeField.getDocument().addDocumentListener(timesChanged);
+        conflictLabel.setText(conflictWarning(dateField.getText(), startTimeField.getText(), endTimeField.getText(), event));
+        
         // Buttons
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton suggestButton = new JButton("Suggest Time");
         JButton saveButton = new JButton("Save");
         JButton cancelButton = new JButton("Cancel");
         
+        buttonPanel.add(suggestButton);
         buttonPanel.add(saveButton);
         buttonPanel.add(cancelButton);
         
@@ -516,6 +606,24 @@ public class CalendarApplication extends JFrame {
                     return;
                 }
                 
+                if (!BinaryEventStore.canStore(startDateTime) || !BinaryEventStore.canStore(endDateTime)) {
+                    JOptionPane.showMessageDialog(dialog, "The date must be before " + BinaryEventStore.LATEST.toLocalDate() + ".");
+                    return;
+                }
+                
+                // Skipped dates stay with the series when it is edited
+                RecurrenceRule recurrence = null;
+                if (repeatCombo.getSelectedIndex() > 0) {
+                    String until = untilField.getText().trim();
+                    String count = countField.getText().trim();
+                    recurrence = new RecurrenceRule(
+                        RecurrenceRule.Frequency.values()[repeatCombo.getSelectedIndex() - 1],
+                        Integer.parseInt(intervalField.getText().trim()),
+                        count.isEmpty() ? 0 : Integer.parseInt(count),
+                        until.isEmpty() ? null : LocalDate.parse(until),
+                        rule != null ? rule.getExceptions() : new ArrayList<>());
+                }
+                
                 if (event == null) {
                     Event newEvent = new Event(name, startDateTime, endDateTime);
                     newEvent.setCategory((EventCategory) categoryCombo.getSelectedItem());
@@ -523,6 +631,7 @@ public class CalendarApplication extends JFrame {
                     newEvent.setLocation(locationField.getText().trim());
                     newEvent.setDescription(descArea.getText().trim());
                     newEvent.setReminderTime((ReminderTime) reminderCombo.getSelectedItem());
+                    newEvent.setRecurrence(recurrence);
                     eventManager.addEvent(newEvent);
                 } else {
                     event.setName(name);
@@ -533,7 +642,8 @@ public class CalendarApplication extends JFrame {
                     event.setLocation(locationField.getText().trim());
                     event.setDescription(descArea.getText().trim());
                     event.setReminderTime((ReminderTime) reminderCombo.getSelectedItem());
-                    eventManager.saveEvents();
+                    event.setRecurrence(recurrence);
+                    eventManager.updateEvent(event);
                 }
                 
                 updateEventList();
@@ -544,16 +654,57 @@ public class CalendarApplication extends JFrame {
             }
         });
         
+        // Moves the event to the next free slot of its current length in working hours
+        suggestButton.addActionListener(e -> {
+            LocalDateTime from;
+            Duration length;
+            try {
+                LocalDate date = LocalDate.parse(dateField.getText().trim());
+                from = LocalDateTime.of(date, LocalTime.parse(startTimeField.getText().trim()));
+                length = Duration.between(from, LocalDateTime.of(date, LocalTime.parse(endTimeField.getText().trim())));
+            } catch (DateTimeException ex) {
+                JOptionPane.showMessageDialog(dialog, "Enter a valid date and times first.");
+                return;
+            }
+            if (length.isNegative() || length.isZero()) length = Duration.ofHours(1);
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime start = eventManager.suggestStart(from.isBefore(now) ? now : from, length, event);
+            if (start == null) {
+                JOptionPane.showMessageDialog(dialog, "No free time during working hours in the next two weeks.");
+                return;
+            }
+            dateField.setText(start.toLocalDate().toString());
+            startTimeField.setText(start.toLocalTime().toString());
+            endTimeField.setText(start.plus(length).toLocalTime().toString());
+        });
+        
         cancelButton.addActionListener(e -> dialog.dispose());
         
         dialog.setVisible(true);
     }
 
+    // Names the events the entered times would overlap; blank while the times do not parse
+    private String conflictWarning(String date, String startTime, String endTime, Event editing) {
+        List<Event> conflicts;
+        try {
+            LocalDate day = LocalDate.parse(date.trim());
+            LocalDateTime start = LocalDateTime.of(day, LocalTime.parse(startTime.trim()));
+            LocalDateTime end = LocalDateTime.of(day, LocalTime.parse(endTime.trim()));
+            if (end.isBefore(start)) return " ";
+            conflicts = eventManager.getConflicts(start, end, editing);
+        } catch (DateTimeException e) {
+            return " ";
+        }
+        if (conflicts.isEmpty()) return " ";
+        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("h:mm a");
+        Event first = conflicts.get(0);
+        String warning = "Overlaps " + first.getName() + " (" + first.getStartDateTime().format(timeFormatter) + ")";
+        return conflicts.size() > 1 ? warning + " and " + (conflicts.size() - 1) + " more" : warning;
+    }
+
     private void updateEventList() {
-        listModel.clear();
-        List<Event> allEvents = eventManager.getAllEvents();
-        allEvents.sort(Comparator.comparing(Event::getStartDateTime));
-        allEvents.forEach(listModel::addElement);
+        eventList.clearSelection();
+        listModel.setItems(eventManager.getEventsByStart());
     }
 
     private void loadEvents() {
@@ -562,42 +713,68 @@ public class CalendarApplication extends JFrame {
         updateCalendarView();
     }
 
-    private void startReminderTimer() {
-        reminderTimer = new javax.swing.Timer(30000, e -> checkReminders());
-        reminderTimer.start();
-    }
-
-    private void checkReminders() {
+    // Reminders are worked out by the reminder engine; whatever fell due together, including
+    // reminders missed while the app was closed, arrives here as one batch and is added to a
+    // single panel that stays open beside the calendar until dismissed
+    private void showReminders(List<ReminderQueue.Reminder<Event>> due) {
+        if (reminderDialog == null) {
+            createReminderDialog();
+        }
         LocalDateTime now = LocalDateTime.now();
+        for (ReminderQueue.Reminder<Event> reminder : due) {
+            reminderModel.addElement(describeReminder(reminder.getItem(), reminder.getStart(), now));
+        }
+        reminderDialog.setTitle(reminderModel.size() == 1 ? "Event Reminder" : reminderModel.size() + " Event Reminders");
         
-        for (Event event : eventManager.getAllEvents()) {
-            if (event.getReminderTime() == ReminderTime.NONE) continue;
-            
-            String eventKey = event.getId() + "-" + event.getStartDateTime().toString();
-            if (notifiedEvents.contains(eventKey)) continue;
-            
-            LocalDateTime reminderTime = event.getStartDateTime().minus(
-                event.getReminderTime().getDuration());
-            
-            if (now.isAfter(reminderTime) && now.isBefore(event.getStartDateTime())) {
-                showReminder(event);
-                notifiedEvents.add(eventKey);
-            }
+        Toolkit.getDefaultToolkit().beep();
+        
+        if (reminderDialog.isVisible()) {
+            reminderDialog.toFront();
+        } else {
+            reminderDialog.setLocationRelativeTo(this);
+            reminderDialog.setVisible(true);
         }
     }
-
-    private void showReminder(Event event) {
-        String message = String.format(
-            "Event: %s\nTime: %s\nLocation: %s",
-            event.getName(),
-            event.getStartDateTime().format(DateTimeFormatter.ofPattern("MMM d, yyyy h:mm a")),
-            event.getLocation().isEmpty() ? "Not specified" : event.getLocation()
-        );
+    
+    private void createReminderDialog() {
+        reminderDialog = new JDialog(this, "Event Reminder", false);
+        reminderDialog.setSize(460, 260);
+        reminderDialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        reminderDialog.setLayout(new BorderLayout());
         
-        Toolkit.getDefaultToolkit().beep();
+        reminderModel = new DefaultListModel<>();
+        JList<String> reminderList = new JList<>(reminderModel);
+        reminderList.setBorder(new EmptyBorder(5, 5, 5, 5));
         
-        JOptionPane.showMessageDialog(this, message, "Event Reminder", 
-            JOptionPane.INFORMATION_MESSAGE);
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton dismissButton = new JButton("Dismiss");
+        buttonPanel.add(dismissButton);
+        
+        reminderDialog.add(new JScrollPane(reminderList), BorderLayout.CENTER);
+        reminderDialog.add(buttonPanel, BorderLayout.SOUTH);
+        
+        Runnable dismiss = () -> {
+            reminderModel.clear();
+            reminderDialog.setVisible(false);
+        };
+        dismissButton.addActionListener(e -> dismiss.run());
+        reminderDialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                dismiss.run();
+            }
+        });
+    }
+    
+    private static String describeReminder(Event event, LocalDateTime start, LocalDateTime now) {
+        String text = String.format("%s%s - %s",
+            start.isAfter(now) ? "" : "Missed: ",
+            event.getName(),
+            start.format(DateTimeFormatter.ofPattern("MMM d, yyyy h:mm a")));
+        if (!event.getLocation().isEmpty()) {
+            text += " @ " + event.getLocation();
+        }
+        return text;
     }
 }
 
@@ -653,13 +830,21 @@ class Event {
     private LocalDateTime startDateTime;
     private LocalDateTime endDateTime;
     private String description;
+    private BlobStore.Ref descriptionRef;
     private EventCategory category;
     private EventPriority priority;
     private String location;
     private ReminderTime reminderTime;
+    private RecurrenceRule recurrence;
+    private Event series;
     
     public Event(String name, LocalDateTime startDateTime, LocalDateTime endDateTime) {
-        this.id = UUID.randomUUID().toString();
+        this(UUID.randomUUID().toString(), name, startDateTime, endDateTime);
+    }
+
+    // Used when restoring a stored event so that its id survives a reload
+    Event(String id, String name, LocalDateTime startDateTime, LocalDateTime endDateTime) {
+        this.id = id;
         this.name = name;
         this.startDateTime = startDateTime;
         this.endDateTime = endDateTime;
@@ -669,7 +854,28 @@ class Event {
         this.location = "";
         this.reminderTime = ReminderTime.NONE;
     }
+
+    Event(Event other) {
+        this(other.id, other.name, other.startDateTime, other.endDateTime);
+        this.description = other.description;
+        this.descriptionRef = other.descriptionRef;
+        this.category = other.category;
+        this.priority = other.priority;
+        this.location = other.location;
+        this.reminderTime = other.reminderTime;
+        this.recurrence = other.recurrence;
+    }
     
+    // A copy standing for the occurrence of this repeating event that starts at start
+    Event occurrenceAt(LocalDateTime start) {
+        Event occurrence = new Event(this);
+        occurrence.startDateTime = start;
+        occurrence.endDateTime = start.plus(Duration.between(startDateTime, endDateTime));
+        occurrence.recurrence = null;
+        occurrence.series = this;
+        return occurrence;
+    }
+
     // Getters and setters
     public String getId() { return id; }
     public String getName() { return name; }
@@ -678,8 +884,11 @@ class Event {
     public void setStartDateTime(LocalDateTime startDateTime) { this.startDateTime = startDateTime; }
     public LocalDateTime getEndDateTime() { return endDateTime; }
     public void setEndDateTime(LocalDateTime endDateTime) { this.endDateTime = endDateTime; }
-    public String getDescription() { return description; }
-    public void setDescription(String description) { this.description = description; }
+    // Stored descriptions stay in their blob file until first asked for
+    public String getDescription() { return descriptionRef != null ? BlobStore.get(descriptionRef) : description; }
+    public void setDescription(String description) { this.description = description; this.descriptionRef = null; }
+    BlobStore.Ref getDescriptionRef() { return descriptionRef; }
+    void setDescriptionRef(BlobStore.Ref ref) { this.descriptionRef = ref; this.description = null; }
     public EventCategory getCategory() { return category; }
     public void setCategory(EventCategory category) { this.category = category; }
     public EventPriority getPriority() { return priority; }
@@ -688,6 +897,10 @@ class Event {
     public void setLocation(String location) { this.location = location; }
     public ReminderTime getReminderTime() { return reminderTime; }
     public void setReminderTime(ReminderTime reminderTime) { this.reminderTime = reminderTime; }
+    // Set on the event that repeats; its occurrences have none but know their series
+    public RecurrenceRule getRecurrence() { return recurrence; }
+    public void setRecurrence(RecurrenceRule recurrence) { this.recurrence = recurrence; }
+    public Event getSeries() { return series; }
     
     @Override
     public String toString() {
@@ -701,120 +914,1242 @@ class Event {
 
 class EventManager {
     private List<Event> events;
-    private static final String DATA_FILE = "calendar_events.txt";
+    private static final String DATA_DIR = "calendar_events";
+    private static final String SNAPSHOT_FILE = "calendar_events.bin";
+    private static final String LEGACY_DATA_FILE = "calendar_events.txt";
+    private static final String JOURNAL_FILE = "calendar_events.journal";
+    private static final String REMINDER_LEDGER = "reminders";
+    // Working hours used when suggesting a time
+    private static final Set<DayOfWeek> WORK_DAYS = EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY);
+    private static final LocalTime WORK_START = LocalTime.of(9, 0);
+    private static final LocalTime WORK_END = LocalTime.of(17, 0);
+    private static final int SUGGEST_DAYS = 14;
+    private final MonthSegments segments = new MonthSegments(new File(DATA_DIR), ".bin");
+    private final Map<Event, YearMonth> segmentOf = new HashMap<>();
+    private final IntervalIndex<Event> index = new IntervalIndex<>(Event::getStartDateTime, Event::getEndDateTime);
+    // Repeating events are kept here instead of in the index, which reports their occurrences
+    private final Occurrences<Event> occurrences =
+        new Occurrences<>(Event::getStartDateTime, Event::getEndDateTime, Event::getRecurrence, Event::occurrenceAt);
+    private final TextIndex<Event> text = new TextIndex<>();
+    private final SortedView<Event> byStart = new SortedView<>(Comparator.comparing(Event::getStartDateTime));
+    private final BitmapIndex<Event> attributes =
+        new BitmapIndex<>(Event::getCategory, Event::getPriority, Event::getReminderTime);
+    private final ReminderBook<Event> reminders = new ReminderBook<>(new File(DATA_DIR, REMINDER_LEDGER),
+        Event::getId, Event::getStartDateTime, EventManager::reminderLead, Event::getRecurrence);
+    private final List<Runnable> loadListeners = new ArrayList<>();
+    private final EventJournal journal = new EventJournal(JOURNAL_FILE);
+    private final ExecutorService storage = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "calendar-storage");
+        t.setDaemon(true);
+        return t;
+    });
     
     public EventManager() {
         events = new ArrayList<>();
+        index.include(occurrences);
     }
     
     public void addEvent(Event event) {
         events.add(event);
-        saveEvents();
+        track(event, words(event));
+        file(event);
+        journal(EventJournal.ADD, event);
+    }
+    
+    // Call after changing an event in place so that the change is persisted
+    public void updateEvent(Event event) {
+        unschedule(event);
+        schedule(event);
+        text.update(event, words(event));
+        byStart.update(event);
+        attributes.update(event);
+        reminders.update(event);
+        file(event);
+        journal(EventJournal.UPDATE, event);
     }
     
     public void deleteEvent(Event event) {
         events.remove(event);
-        saveEvents();
+        untrack(event);
+        YearMonth previous = segmentOf.remove(event);
+        if (previous != null) segments.markDirty(previous);
+        journal(EventJournal.DELETE, event);
     }
     
     public List<Event> getAllEvents() {
         return new ArrayList<>(events);
     }
     
+    // Leaves the date of one occurrence out of its series
+    public void skipOccurrence(Event occurrence) {
+        Event series = occurrence.getSeries();
+        series.setRecurrence(series.getRecurrence().except(occurrence.getStartDateTime().toLocalDate()));
+        updateEvent(series);
+    }
+    
+    // Replaces one occurrence by an event of its own, which can then be changed on its own
+    public Event detachOccurrence(Event occurrence) {
+        skipOccurrence(occurrence);
+        Event single = new Event(occurrence.getName(), occurrence.getStartDateTime(), occurrence.getEndDateTime());
+        single.setDescription(occurrence.getDescription());
+        single.setCategory(occurrence.getCategory());
+        single.setPriority(occurrence.getPriority());
+        single.setLocation(occurrence.getLocation());
+        single.setReminderTime(occurrence.getReminderTime());
+        addEvent(single);
+        return single;
+    }
+    
+    // Events that an event from start to end would overlap, leaving out the one being edited
+    public List<Event> getConflicts(LocalDateTime start, LocalDateTime end, Event editing) {
+        ensureLoaded(YearMonth.from(start));
+        return index.conflicting(start, end, editing);
+    }
+    
+    // Every pair of overlapping events within [from, to) of the loaded months
+    public List<IntervalIndex.Conflict<Event>> getConflictsBetween(LocalDateTime from, LocalDateTime to) {
+        return index.conflicts(from, to);
+    }
+    
+    // The first free stretches of at least the given length within [from, to) on the given
+    // days between dayStart and dayEnd; the event being rescheduled does not count as busy
+    public List<IntervalIndex.Span> findFreeSlots(LocalDateTime from, LocalDateTime to, Duration length,
+            Set<DayOfWeek> days, LocalTime dayStart, LocalTime dayEnd, Event ignore, int limit) {
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            ensureLoaded(month);
+        }
+        return index.free(from, to, length, days, dayStart, dayEnd, ignore, limit);
+    }
+
+    // Where an event of the given length could go next: the first free slot in working hours
+    // over the next two weeks, starting on a quarter hour after the given time; null if none
+    public LocalDateTime suggestStart(LocalDateTime after, Duration length, Event ignore) {
+        LocalDateTime from = after.truncatedTo(ChronoUnit.HOURS)
+            .plusMinutes((after.getMinute() + 14) / 15 * 15);
+        List<IntervalIndex.Span> slots = findFreeSlots(from, from.plusDays(SUGGEST_DAYS), length,
+            WORK_DAYS, WORK_START, WORK_END, ignore, 1);
+        return slots.isEmpty() ? null : slots.get(0).getStart();
+    }
+
+    // Events with one of the given values of each non-empty set, optionally only those
+    // overlapping [from, to), ordered by start; e.g. high-priority work events in March that
+    // have a reminder
+    public List<Event> filterEvents(Set<EventCategory> categories, Set<EventPriority> priorities,
+            Set<ReminderTime> reminders, LocalDateTime from, LocalDateTime to) {
+        BitmapIndex.Bitmap matching = attributes.matching(Arrays.asList(categories, priorities, reminders));
+        if (from != null && to != null) {
+            // Occurrences are not filed themselves; their series is
+            List<Event> result = new ArrayList<>();
+            for (Event event : index.overlapping(from, to)) {
+                if (attributes.contains(matching, event.getSeries() != null ? event.getSeries() : event)) result.add(event);
+            }
+            return result;
+        }
+        List<Event> result = attributes.items(matching);
+        result.sort(Comparator.comparing(Event::getStartDateTime));
+        return result;
+    }
+    
+    // Read-only view of all loaded events ordered by start, kept in order as events change
+    public List<Event> getEventsByStart() {
+        return byStart.asList();
+    }
+    
+    // Every event that overlaps the day, including ones that started on an earlier day and
+    // occurrences of repeating events
     public List<Event> getEventsForDate(LocalDate date) {
-        List<Event> dateEvents = new ArrayList<>();
-        for (Event event : events) {
-            if (event.getStartDateTime().toLocalDate().equals(date)) {
-                dateEvents.add(event);
+        return index.on(date);
+    }
+    
+    public List<Event> getEventsBetween(LocalDateTime from, LocalDateTime to) {
+        return index.overlapping(from, to);
+    }
+    
+    // All events of a run of days (such as the 42 cells of the month grid) from one query,
+    // each day ordered by start
+    public IntervalIndex.DayBuckets<Event> getEventsByDay(LocalDate first, int days) {
+        return index.byDay(first, days);
+    }
+    
+    // Events whose name, description or location has words starting with each word of the
+    // query; only loaded months are searched
+    public List<Event> searchEvents(String query) {
+        return text.search(query);
+    }
+    
+    // Called when months read lazily have been added to the event list
+    public void addLoadListener(Runnable listener) {
+        loadListeners.add(listener);
+    }
+    
+    // Hands reminders to the reminder engine, which checks them off the UI thread whenever the
+    // next one is due and passes every batch found due together to deliver on the UI thread
+    public void startReminders(Consumer<List<ReminderQueue.Reminder<Event>>> deliver) {
+        reminders.start(due -> SwingUtilities.invokeLater(() -> deliver.accept(due)));
+    }
+    
+    // When the earliest pending reminder is due, or null if there is none
+    public LocalDateTime getNextReminderDue() {
+        return reminders.getNextDue();
+    }
+    
+    // Reminders that fell due since the last check and have not been shown yet; see ReminderBook
+    public List<ReminderQueue.Reminder<Event>> takeDueReminders(LocalDateTime now) {
+        return reminders.takeDue(now);
+    }
+    
+    private static Duration reminderLead(Event event) {
+        return event.getReminderTime() == ReminderTime.NONE ? null : event.getReminderTime().getDuration();
+    }
+    
+    // Makes sure the given month and its neighbours are in memory
+    public boolean ensureLoaded(YearMonth month) {
+        List<YearMonth> missing = segments.unloaded(month.minusMonths(1), month.plusMonths(1));
+        for (YearMonth m : missing) {
+            ensureSegmentLoaded(m);
+        }
+        if (!missing.isEmpty()) {
+            SwingUtilities.invokeLater(() -> loadListeners.forEach(Runnable::run));
+        }
+        return !missing.isEmpty();
+    }
+    
+    // Files the event under the month it starts in; that month has to be loaded first so
+    // that rewriting its segment cannot drop events still on disk
+    private void file(Event event) {
+        YearMonth month = YearMonth.from(event.getStartDateTime());
+        YearMonth previous = segmentOf.put(event, month);
+        if (previous != null) segments.markDirty(previous);
+        ensureSegmentLoaded(month);
+        segments.markDirty(month);
+    }
+    
+    private void ensureSegmentLoaded(YearMonth month) {
+        if (segments.isLoaded(month)) return;
+        if (segments.hasSegment(month)) {
+            mergeSegment(month, readSegment(month));
+        }
+        segments.markLoaded(month);
+    }
+    
+    private void mergeSegment(YearMonth month, Map<Event, String[]> segment) {
+        if (segments.isLoaded(month)) return;
+        segments.markLoaded(month);
+        segment.forEach((event, words) -> {
+            events.add(event);
+            track(event, words);
+            segmentOf.put(event, month);
+        });
+    }
+    
+    // The events of a month with the words to index them under, so that background loads
+    // also do the tokenizing (and description reads) off the event thread
+    private Map<Event, String[]> readSegment(YearMonth month) {
+        Map<Event, String[]> segment = new LinkedHashMap<>();
+        if (!segments.segmentFile(month).exists()) return segment;
+        try {
+            for (Event event : new BinaryEventStore(segments.segmentFile(month)).load()) {
+                segment.put(event, words(event));
             }
+        } catch (IOException e) {
+            System.err.println("Error loading events for " + month + ": " + e.getMessage());
         }
-        return dateEvents;
+        return segment;
+    }
+    
+    // Every lookup structure follows the event list
+    private void track(Event event, String[] words) {
+        schedule(event);
+        text.add(event, words);
+        byStart.add(event);
+        attributes.add(event);
+        reminders.add(event);
+    }
+    
+    private void untrack(Event event) {
+        unschedule(event);
+        text.remove(event);
+        byStart.remove(event);
+        attributes.remove(event);
+        reminders.remove(event);
+    }
+    
+    private void schedule(Event event) {
+        if (event.getRecurrence() != null) {
+            occurrences.add(event);
+        } else {
+            index.add(event);
+        }
+    }
+    
+    private void unschedule(Event event) {
+        index.remove(event);
+        occurrences.remove(event);
+    }
+    
+    private static String[] words(Event event) {
+        BlobStore.Ref ref = event.getDescriptionRef();
+        String description = ref != null ? BlobStore.peek(ref) : event.getDescription();
+        return TextIndex.words(event.getName(), description, event.getLocation());
     }
     
+    // Reads the remaining months from the given one onwards without blocking the UI
+    private void preload(YearMonth from) {
+        List<YearMonth> months = segments.unloadedFrom(from);
+        if (months.isEmpty()) return;
+        storage.execute(() -> {
+            Map<YearMonth, Map<Event, String[]>> loaded = new LinkedHashMap<>();
+            for (YearMonth month : months) {
+                loaded.put(month, readSegment(month));
+            }
+            SwingUtilities.invokeLater(() -> {
+                loaded.forEach(this::mergeSegment);
+                loadListeners.forEach(Runnable::run);
+            });
+        });
+    }
+    
+    private void journal(byte op, Event event) {
+        try {
+            journal.append(op, event);
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+            saveEvents();
+            return;
+        }
+        if (journal.needsCompaction()) {
+            compact();
+        }
+    }
+    
+    // Writes all pending changes and waits for them; pending journal records are folded in,
+    // and reminders count as handled up to now
     public void saveEvents() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(DATA_FILE))) {
-            for (Event event : events) {
-                writer.println("EVENT_START");
-                writer.println("ID:" + event.getId());
-                writer.println("NAME:" + event.getName());
-                writer.println("START:" + event.getStartDateTime().toString());
-                writer.println("END:" + event.getEndDateTime().toString());
-                writer.println("DESCRIPTION:" + event.getDescription());
-                writer.println("CATEGORY:" + event.getCategory().name());
-                writer.println("PRIORITY:" + event.getPriority().name());
-                writer.println("LOCATION:" + event.getLocation());
-                writer.println("REMINDER:" + event.getReminderTime().name());
-                writer.println("EVENT_END");
+        try {
+            compact().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error saving events: " + e.getCause().getMessage());
+        }
+        reminders.saveProgress();
+    }
+    
+    // Seals the current journal generation and rewrites the segments of the months changed
+    // since the last compaction in the background, where the sealed generation is synced first. Writes run in submission order, so an
+    // older snapshot never replaces a newer one.
+    private Future<?> compact() {
+        EventJournal.Sealed sealed = journal.seal();
+        Map<YearMonth, List<Event>> snapshot = new TreeMap<>();
+        for (YearMonth month : segments.takeDirty()) {
+            ensureSegmentLoaded(month);
+            snapshot.put(month, new ArrayList<>());
+        }
+        for (Event event : events) {
+            List<Event> segment = snapshot.get(segmentOf.get(event));
+            if (segment != null) segment.add(new Event(event));
+        }
+        Map<YearMonth, Integer> counts = new HashMap<>();
+        Set<YearMonth> repeating = new HashSet<>();
+        snapshot.forEach((month, segment) -> {
+            counts.put(month, segment.size());
+            if (segment.stream().anyMatch(event -> event.getRecurrence() != null)) repeating.add(month);
+        });
+        String manifest = segments.updateCounts(counts, repeating);
+        return storage.submit(() -> {
+            sealed.close();
+            if (writeSegments(snapshot, manifest)) {
+                journal.deleteThrough(sealed.generation);
+            } else {
+                SwingUtilities.invokeLater(() -> snapshot.keySet().forEach(segments::markDirty));
             }
+        });
+    }
+    
+    private boolean writeSegments(Map<YearMonth, List<Event>> snapshot, String manifest) {
+        try {
+            segments.createDirectory();
+            Map<File, Long> written = new HashMap<>();
+            for (Map.Entry<YearMonth, List<Event>> entry : snapshot.entrySet()) {
+                File file = segments.segmentFile(entry.getKey());
+                if (entry.getValue().isEmpty()) {
+                    segments.deleteSegment(entry.getKey());
+                    written.put(file, 0L);
+                } else {
+                    written.put(file, new BinaryEventStore(file).save(entry.getValue()));
+                }
+            }
+            segments.writeManifest(manifest);
+            // Only now nothing on disk refers to the previous blob generations
+            written.forEach(BlobStore::retain);
+            return true;
         } catch (IOException e) {
             System.err.println("Error saving events: " + e.getMessage());
+            return false;
         }
     }
     
+    // Loads the current month and its neighbours along with every month holding a repeating
+    // event and the months since the last run, whose reminders may have been missed; later
+    // months follow in the background and earlier ones only when the calendar is navigated to them
     public void loadEvents() {
-        File file = new File(DATA_FILE);
-        if (!file.exists()) return;
-        
-        try (BufferedReader reader = new BufferedReader(new FileReader(DATA_FILE))) {
-            String line;
-            Event currentEvent = null;
-            String id = null, name = null, description = null, location = null;
-            LocalDateTime start = null, end = null;
-            EventCategory category = null;
-            EventPriority priority = null;
-            ReminderTime reminder = null;
+        YearMonth focus = YearMonth.now();
+        boolean migrated = false;
+        LocalDateTime lastRun = reminders.load();
+        if (segments.exists()) {
+            try {
+                segments.readManifest();
+            } catch (IOException e) {
+                System.err.println("Error loading events: " + e.getMessage());
+            }
+            segments.removeOrphanBlobs(BinaryEventStore::blobGeneration);
+            // After an unclean shutdown the journal is replayed over the complete state
+            List<YearMonth> months = journal.isEmpty()
+                ? segments.unloaded(focus.minusMonths(1), focus.plusMonths(1))
+                : segments.unloaded();
+            List<YearMonth> eager = new ArrayList<>(segments.unloadedRepeating());
+            if (lastRun != null && YearMonth.from(lastRun).isBefore(focus.minusMonths(1))) {
+                eager.addAll(segments.unloaded(YearMonth.from(lastRun), focus.minusMonths(2)));
+            }
+            for (YearMonth month : eager) {
+                if (!months.contains(month)) months.add(month);
+            }
+            for (YearMonth month : months) {
+                mergeSegment(month, readSegment(month));
+            }
+        } else {
+            migrated = loadSnapshot();
+        }
+        
+        Map<String, Event> byId = new LinkedHashMap<>();
+        for (Event event : events) {
+            byId.put(event.getId(), event);
+        }
+        long replayed = journal.replay(byId);
+        if (migrated || replayed > 0) {
+            events = new ArrayList<>(byId.values());
+            index.clear();
+            occurrences.clear();
+            text.clear();
+            byStart.clear();
+            attributes.clear();
+            reminders.clear();
+            for (Event event : events) {
+                track(event, words(event));
+            }
+            segments.months().forEach(segments::markDirty);
+            segmentOf.clear();
+            for (Event event : events) {
+                file(event);
+            }
+            compact();
+        } else {
+            preload(focus.plusMonths(2));
+        }
+    }
+    
+    // Reads the single-file store or the legacy text file that predate month segments;
+    // returns true when there was one to convert
+    private boolean loadSnapshot() {
+        File snapshot = new File(SNAPSHOT_FILE);
+        if (snapshot.exists()) {
+            try {
+                events.addAll(new BinaryEventStore(snapshot).load());
+            } catch (IOException e) {
+                System.err.println("Error loading events: " + e.getMessage());
+            }
+            return true;
+        }
+        File legacy = new File(LEGACY_DATA_FILE);
+        if (!legacy.exists()) return false;
+        importLegacyEvents(legacy);
+        return true;
+    }
+    
+    // Reads the original EVENT_START/EVENT_END text format
+    private void importLegacyEvents(File file) {
+        try {
+            LegacyEventParser.parse(file, events);
+        } catch (IOException e) {
+            System.err.println("Error loading events: " + e.getMessage());
+        }
+    }
+}
+
+// Fixed-layout snapshot of all events, read through a memory mapping.
+//   header : magic, version, record size, record count, heap offset, heap length
+//   records: start/end as epoch minutes, enum ordinals, and heap offsets of the strings
+//   heap   : length-prefixed UTF-8 strings, identical strings stored once
+class BinaryEventStore {
+    private static final int MAGIC = 0x4A534345; // "JSCE"
+    private static final short VERSION = 4;
+    private static final int HEADER_SIZE = 24;
+    private static final int RECORD_SIZE = 32;
+    private static final int BLOCK_HEADER_SIZE = 8;
+    // Times are kept as minutes since 1970 in an int, which runs out early in the year 6053
+    static final LocalDateTime LATEST = LocalDateTime.ofEpochSecond(Integer.MAX_VALUE * 60L, 0, ZoneOffset.UTC);
+    
+    private final File file;
+    
+    public BinaryEventStore(File file) {
+        this.file = file;
+    }
+    
+    // Version 1 files hold one uncompressed record table and heap after the header. From
+    // version 2 on the header is followed by CompressedBlocks, each with its own small table
+    // and heap ([int count][int heapLength][records][heap]), so blocks decode independently.
+    // From version 3 on descriptions live in a BlobStore file whose generation is kept in the
+    // header; the record holds the blob offset, or -1 for no description. From version 4 on the
+    // last field of a record is the heap offset of a repeating event's rule, or -1.
+    // Records are decoded as the file is read rather than on access: every loaded event goes
+    // straight into the date, text and order indexes, which would decode it at once anyway.
+    // What stays lazy is which months are read and the descriptions.
+    public List<Event> load() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException(file.getName() + " is not an event store");
+            }
+            short version = buffer.getShort(4);
+            if (version < 1 || version > VERSION || buffer.getShort(6) != RECORD_SIZE) {
+                throw new IOException("unsupported event store version " + version);
+            }
+            if (version >= 2) {
+                File blob = null;
+                if (version >= 3) {
+                    blob = BlobStore.open(file, buffer.getLong(16));
+                }
+                File blobFile = blob;
+                boolean rules = version >= 4;
+                buffer.position(HEADER_SIZE);
+                return CompressedBlocks.read(file.toPath(), buffer, (block, into) -> decodeBlock(block, blobFile, rules, into));
+            }
             
-            while ((line = reader.readLine()) != null) {
-                if (line.equals("EVENT_START")) {
-                    id = name = description = location = null;
-                    start = end = null;
-                    category = null;
-                    priority = null;
-                    reminder = null;
-                } else if (line.equals("EVENT_END")) {
-                    if (name != null && start != null && end != null) {
-                        Event event = new Event(name, start, end);
-                        if (description != null) event.setDescription(description);
-                        if (category != null) event.setCategory(category);
-                        if (priority != null) event.setPriority(priority);
-                        if (location != null) event.setLocation(location);
-                        if (reminder != null) event.setReminderTime(reminder);
-                        events.add(event);
-                    }
-                } else if (line.startsWith("ID:")) {
-                    id = line.substring(3);
-                } else if (line.startsWith("NAME:")) {
-                    name = line.substring(5);
-                } else if (line.startsWith("START:")) {
-                    start = LocalDateTime.parse(line.substring(6));
-                } else if (line.startsWith("END:")) {
-                    end = LocalDateTime.parse(line.substring(4));
-                } else if (line.startsWith("DESCRIPTION:")) {
-                    description = line.substring(12);
-                } else if (line.startsWith("CATEGORY:")) {
-                    try {
-                        category = EventCategory.valueOf(line.substring(9));
-                    } catch (IllegalArgumentException e) {
-                        category = EventCategory.OTHER;
-                    }
-                } else if (line.startsWith("PRIORITY:")) {
-                    try {
-                        priority = EventPriority.valueOf(line.substring(9));
-                    } catch (IllegalArgumentException e) {
-                        priority = EventPriority.MEDIUM;
-                    }
-                } else if (line.startsWith("LOCATION:")) {
-                    location = line.substring(9);
-                } else if (line.startsWith("REMINDER:")) {
-                    try {
-                        reminder = ReminderTime.valueOf(line.substring(9));
-                    } catch (IllegalArgumentException e) {
-                        reminder = ReminderTime.NONE;
-                    }
+            int count = buffer.getInt(8);
+            int heapOffset = buffer.getInt(12);
+            int heapLength = buffer.getInt(16);
+            if (count < 0 || heapOffset != HEADER_SIZE + (long) count * RECORD_SIZE
+                    || (long) heapOffset + heapLength > buffer.capacity()) {
+                throw new IOException(file.getName() + " is truncated");
+            }
+            List<Event> events = new ArrayList<>(count);
+            decodeRecords(buffer, HEADER_SIZE, count, heapOffset, heapLength, null, false, events);
+            return events;
+        }
+    }
+    
+    private static void decodeBlock(ByteBuffer block, File blob, boolean rules, List<Event> into) throws IOException {
+        int count = block.getInt(0);
+        int heapLength = block.getInt(4);
+        long heapOffset = BLOCK_HEADER_SIZE + (long) count * RECORD_SIZE;
+        if (count < 0 || heapLength < 0 || heapOffset + heapLength != block.capacity()) {
+            throw new IOException("bad block layout");
+        }
+        decodeRecords(block, BLOCK_HEADER_SIZE, count, (int) heapOffset, heapLength, blob, rules, into);
+    }
+    
+    // Descriptions come from the heap when blob is null, otherwise the record holds a blob offset
+    private static void decodeRecords(ByteBuffer buffer, int recordsOffset, int count, int heapOffset,
+            int heapLength, File blob, boolean rules, List<Event> into) throws IOException {
+        Map<Integer, String> strings = new HashMap<>();
+        EventCategory[] categories = EventCategory.values();
+        EventPriority[] priorities = EventPriority.values();
+        ReminderTime[] reminders = ReminderTime.values();
+        for (int i = 0; i < count; i++) {
+            int record = recordsOffset + i * RECORD_SIZE;
+            Event event = new Event(
+                string(buffer, heapOffset, heapLength, buffer.getInt(record + 12), strings),
+                string(buffer, heapOffset, heapLength, buffer.getInt(record + 16), strings),
+                fromEpochMinute(buffer.getInt(record)),
+                fromEpochMinute(buffer.getInt(record + 4)));
+            event.setCategory(constant(categories, buffer.get(record + 8), EventCategory.OTHER));
+            event.setPriority(constant(priorities, buffer.get(record + 9), EventPriority.MEDIUM));
+            event.setReminderTime(constant(reminders, buffer.get(record + 10), ReminderTime.NONE));
+            int description = buffer.getInt(record + 20);
+            if (blob == null) {
+                event.setDescription(string(buffer, heapOffset, heapLength, description, strings));
+            } else if (description >= 0) {
+                event.setDescriptionRef(new BlobStore.Ref(blob, description));
+            }
+            event.setLocation(string(buffer, heapOffset, heapLength, buffer.getInt(record + 24), strings));
+            int rule = buffer.getInt(record + 28);
+            if (rules && rule >= 0) {
+                String text = string(buffer, heapOffset, heapLength, rule, strings);
+                try {
+                    event.setRecurrence(RecurrenceRule.decode(text));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage());
+                }
+            }
+            into.add(event);
+        }
+    }
+    
+    // The blob generation the segment file refers to, 0 for none
+    public static long blobGeneration(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // reads until the header is complete or the file ends
+            }
+        }
+        if (header.position() < HEADER_SIZE || header.getInt(0) != MAGIC) throw new IOException(file.getName() + " is not an event store");
+        return header.getShort(4) >= 3 ? header.getLong(16) : 0;
+    }
+    
+    // The blob file is written first, so the segment never refers to one that is missing.
+    // Returns the blob generation written.
+    public long save(List<Event> events) throws IOException {
+        long[] descriptions = new long[events.size()];
+        long blobGeneration = BlobStore.write(file, events, Event::getDescriptionRef, Event::getDescription, descriptions);
+        List<byte[]> blocks = encodeBlocks(events, descriptions);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) RECORD_SIZE);
+        header.putInt(events.size());
+        header.putInt(blocks.size());
+        header.putLong(blobGeneration);
+        header.flip();
+        
+        DurableWriter.shared().writeAndWait(file.toPath(), channel -> {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            try (CompressedBlocks.Writer writer = new CompressedBlocks.Writer(channel)) {
+                for (byte[] block : blocks) {
+                    writer.write(block, block.length);
+                }
+            }
+        });
+        return blobGeneration;
+    }
+    
+    // Cuts the events into blocks of roughly CompressedBlocks.BLOCK_SIZE bytes, strings
+    // interned per block
+    private static List<byte[]> encodeBlocks(List<Event> events, long[] descriptions) throws IOException {
+        List<byte[]> blocks = new ArrayList<>();
+        ByteBuffer records = ByteBuffer.allocate((CompressedBlocks.BLOCK_SIZE / RECORD_SIZE + 1) * RECORD_SIZE);
+        ByteArrayOutputStream heap = new ByteArrayOutputStream();
+        Map<String, Integer> offsets = new HashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            if (descriptions[i] > Integer.MAX_VALUE) throw new IOException("too much description text for one month");
+            records.putInt(toEpochMinute(event.getStartDateTime()));
+            records.putInt(toEpochMinute(event.getEndDateTime()));
+            records.put((byte) event.getCategory().ordinal());
+            records.put((byte) event.getPriority().ordinal());
+            records.put((byte) event.getReminderTime().ordinal());
+            records.put((byte) 0);
+            records.putInt(intern(heap, offsets, event.getId()));
+            records.putInt(intern(heap, offsets, event.getName()));
+            records.putInt((int) descriptions[i]);
+            records.putInt(intern(heap, offsets, event.getLocation()));
+            records.putInt(event.getRecurrence() != null ? intern(heap, offsets, event.getRecurrence().encode()) : -1);
+            if (records.position() + heap.size() >= CompressedBlocks.BLOCK_SIZE) {
+                blocks.add(block(records, heap));
+                offsets.clear();
+            }
+        }
+        if (records.position() > 0) {
+            blocks.add(block(records, heap));
+        }
+        return blocks;
+    }
+    
+    private static byte[] block(ByteBuffer records, ByteArrayOutputStream heap) {
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_SIZE + records.position() + heap.size());
+        block.putInt(records.position() / RECORD_SIZE);
+        block.putInt(heap.size());
+        records.flip();
+        block.put(records);
+        records.clear();
+        block.put(heap.toByteArray());
+        heap.reset();
+        return block.array();
+    }
+    
+    private static int intern(ByteArrayOutputStream heap, Map<String, Integer> offsets, String value) {
+        Integer offset = offsets.get(value);
+        if (offset != null) return offset;
+        offset = heap.size();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        heap.write(bytes.length >>> 24);
+        heap.write(bytes.length >>> 16);
+        heap.write(bytes.length >>> 8);
+        heap.write(bytes.length);
+        heap.write(bytes, 0, bytes.length);
+        offsets.put(value, offset);
+        return offset;
+    }
+    
+    private static String string(ByteBuffer buffer, int heapOffset, int heapLength, int offset,
+            Map<Integer, String> strings) throws IOException {
+        String value = strings.get(offset);
+        if (value != null) return value;
+        if (offset < 0 || offset > heapLength - 4) throw new IOException("bad string offset " + offset);
+        int length = buffer.getInt(heapOffset + offset);
+        if (length < 0 || length > heapLength - offset - 4) throw new IOException("bad string length at " + offset);
+        byte[] bytes = new byte[length];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(heapOffset + offset + 4);
+        slice.get(bytes);
+        value = new String(bytes, StandardCharsets.UTF_8);
+        strings.put(offset, value);
+        return value;
+    }
+    
+    private static <E extends Enum<E>> E constant(E[] values, byte ordinal, E fallback) {
+        return ordinal >= 0 && ordinal < values.length ? values[ordinal] : fallback;
+    }
+    
+    public static boolean canStore(LocalDateTime dateTime) {
+        long minute = Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+        return minute >= Integer.MIN_VALUE && minute <= Integer.MAX_VALUE;
+    }
+    
+    private static int toEpochMinute(LocalDateTime dateTime) throws IOException {
+        try {
+            return Math.toIntExact(Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60));
+        } catch (ArithmeticException e) {
+            throw new IOException("cannot store the date " + dateTime);
+        }
+    }
+    
+    private static LocalDateTime fromEpochMinute(int minute) {
+        return LocalDateTime.ofEpochSecond(minute * 60L, 0, ZoneOffset.UTC);
+    }
+}
+
+// Reads the original EVENT_START/EVENT_END text format. The file is mapped and cut at
+// EVENT_START lines; since those reset the parser state, the pieces are parsed independently
+// on the fork/join pool and concatenated in file order. Fields are matched on the raw bytes,
+// so only the text values themselves become Strings.
+class LegacyEventParser {
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final Charset CHARSET = Charset.defaultCharset();
+    private static final EventCategory[] CATEGORIES = EventCategory.values();
+    private static final EventPriority[] PRIORITIES = EventPriority.values();
+    private static final ReminderTime[] REMINDERS = ReminderTime.values();
+    
+    private final ByteBuffer buffer;
+    private final List<Event> events = new ArrayList<>();
+    private RuntimeException failure;
+    
+    private String id, name, description, location;
+    private LocalDateTime start, end;
+    private EventCategory category;
+    private EventPriority priority;
+    private ReminderTime reminder;
+    
+    private LegacyEventParser(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+    
+    // Adds the parsed events to the list. As with the line-by-line reader this replaced, a bad
+    // START/END value keeps the events before it and then rethrows the DateTimeParseException.
+    public static void parse(File file, List<Event> into) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() == 0) return;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        List<Integer> bounds = chunkBounds(buffer);
+        List<LegacyEventParser> chunks = IntStream.range(0, bounds.size() - 1).parallel()
+            .mapToObj(i -> new LegacyEventParser(buffer).parseChunk(bounds.get(i), bounds.get(i + 1)))
+            .collect(Collectors.toList());
+        for (LegacyEventParser chunk : chunks) {
+            into.addAll(chunk.events);
+            if (chunk.failure != null) throw chunk.failure;
+        }
+    }
+    
+    private static List<Integer> chunkBounds(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int pos = CHUNK_SIZE;
+        while (pos < limit) {
+            pos = nextLine(buffer, pos, limit);
+            if (pos < limit && isLine(buffer, pos, lineEnd(buffer, pos, limit), "EVENT_START")) {
+                bounds.add(pos);
+                pos += CHUNK_SIZE;
+            }
+        }
+        bounds.add(limit);
+        return bounds;
+    }
+    
+    private LegacyEventParser parseChunk(int from, int to) {
+        int pos = from;
+        try {
+            while (pos < to) {
+                parseLine(pos, lineEnd(buffer, pos, to));
+                pos = nextLine(buffer, pos, to);
+            }
+        } catch (DateTimeParseException e) {
+            failure = e;
+        }
+        return this;
+    }
+    
+    private void parseLine(int from, int to) {
+        if (isLine(buffer, from, to, "EVENT_START")) {
+            id = name = description = location = null;
+            start = end = null;
+            category = null;
+            priority = null;
+            reminder = null;
+        } else if (isLine(buffer, from, to, "EVENT_END")) {
+            if (name != null && start != null && end != null) {
+                Event event = id != null ? new Event(id, name, start, end) : new Event(name, start, end);
+                if (description != null) event.setDescription(description);
+                if (category != null) event.setCategory(category);
+                if (priority != null) event.setPriority(priority);
+                if (location != null) event.setLocation(location);
+                if (reminder != null) event.setReminderTime(reminder);
+                events.add(event);
+            }
+        } else if (startsWith(from, to, "ID:")) {
+            id = text(from + 3, to);
+        } else if (startsWith(from, to, "NAME:")) {
+            name = text(from + 5, to);
+        } else if (startsWith(from, to, "START:")) {
+            start = dateTime(from + 6, to);
+        } else if (startsWith(from, to, "END:")) {
+            end = dateTime(from + 4, to);
+        } else if (startsWith(from, to, "DESCRIPTION:")) {
+            description = text(from + 12, to);
+        } else if (startsWith(from, to, "CATEGORY:")) {
+            category = constant(CATEGORIES, from + 9, to, EventCategory.OTHER);
+        } else if (startsWith(from, to, "PRIORITY:")) {
+            priority = constant(PRIORITIES, from + 9, to, EventPriority.MEDIUM);
+        } else if (startsWith(from, to, "LOCATION:")) {
+            location = text(from + 9, to);
+        } else if (startsWith(from, to, "REMINDER:")) {
+            reminder = constant(REMINDERS, from + 9, to, ReminderTime.NONE);
+        }
+    }
+    
+    // Fast path for the yyyy-MM-ddTHH:mm[:ss[.fffffffff]] form that LocalDateTime.toString()
+    // writes; anything else goes through LocalDateTime.parse for identical results and errors.
+    private LocalDateTime dateTime(int from, int to) {
+        int length = to - from;
+        if ((length == 16 || length == 19 || (length >= 21 && length <= 29))
+                && buffer.get(from + 4) == '-' && buffer.get(from + 7) == '-'
+                && buffer.get(from + 10) == 'T' && buffer.get(from + 13) == ':') {
+            int year = digits(from, 4);
+            int month = digits(from + 5, 2);
+            int day = digits(from + 8, 2);
+            int hour = digits(from + 11, 2);
+            int minute = digits(from + 14, 2);
+            int second = 0;
+            int nano = 0;
+            boolean valid = year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0;
+            if (valid && length >= 19) {
+                second = buffer.get(from + 16) == ':' ? digits(from + 17, 2) : -1;
+                valid = second >= 0;
+            }
+            if (valid && length >= 21) {
+                nano = buffer.get(from + 19) == '.' ? digits(from + 20, length - 20) : -1;
+                for (int i = length - 20; i < 9 && nano >= 0; i++) nano *= 10;
+                valid = nano >= 0;
+            }
+            if (valid) {
+                try {
+                    return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+                } catch (DateTimeException ignored) {
+                }
+            }
+        }
+        return LocalDateTime.parse(text(from, to));
+    }
+    
+    private int digits(int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+    
+    private <E extends Enum<E>> E constant(E[] values, int from, int to, E fallback) {
+        for (E value : values) {
+            if (isLine(buffer, from, to, value.name())) return value;
+        }
+        return fallback;
+    }
+    
+    private String text(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(from + i);
+        return new String(bytes, CHARSET);
+    }
+    
+    private boolean startsWith(int from, int to, String prefix) {
+        if (to - from < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer.get(from + i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+    
+    private static boolean isLine(ByteBuffer buffer, int from, int to, String line) {
+        if (to - from != line.length()) return false;
+        for (int i = 0; i < line.length(); i++) {
+            if (buffer.get(from + i) != line.charAt(i)) return false;
+        }
+        return true;
+    }
+    
+    private static int nextLine(ByteBuffer buffer, int pos, int limit) {
+        int eol = lineEnd(buffer, pos, limit);
+        if (eol + 1 < limit && buffer.get(eol) == '\r' && buffer.get(eol + 1) == '\n') eol++;
+        return eol + 1;
+    }
+    
+    private static int lineEnd(ByteBuffer buffer, int pos, int limit) {
+        while (pos < limit) {
+            byte b = buffer.get(pos);
+            if (b == '\n' || b == '\r') break;
+            pos++;
+        }
+        return pos;
+    }
+}
+
+// Append-only log of event mutations. Each record is [length][crc32][payload] and carries
+// the full state of the event, so replaying a generation twice converges to the same result.
+class EventJournal {
+    static final byte ADD = 1;
+    static final byte UPDATE = 2;
+    static final byte DELETE = 3;
+    static final long COMPACT_THRESHOLD = 256 * 1024;
+    
+    private final File base;
+    private DataOutputStream out;
+    private FileChannel channel;
+    private CompletableFuture<Void> pending;
+    private IOException failure;
+    private long generation = 1;
+    private long size;
+    
+    public EventJournal(String fileName) {
+        this.base = new File(fileName).getAbsoluteFile();
+    }
+    
+    // Returns once the record is written; it is forced to disk in the background. A force
+    // that failed is reported by the next append, before it writes anything.
+    public synchronized void append(byte op, Event event) throws IOException {
+        if (failure != null) {
+            IOException e = failure;
+            failure = null;
+            throw e;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        DataOutputStream data = new DataOutputStream(buffer);
+        data.writeByte(op);
+        writeString(data, event.getId());
+        if (op != DELETE) {
+            writeString(data, event.getName());
+            writeDateTime(data, event.getStartDateTime());
+            writeDateTime(data, event.getEndDateTime());
+            writeString(data, event.getDescription());
+            writeString(data, event.getCategory().name());
+            writeString(data, event.getPriority().name());
+            writeString(data, event.getLocation());
+            writeString(data, event.getReminderTime().name());
+            writeString(data, event.getRecurrence() != null ? event.getRecurrence().encode() : "");
+        }
+        byte[] payload = buffer.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        
+        if (out == null) {
+            FileOutputStream file = new FileOutputStream(fileFor(generation), true);
+            channel = file.getChannel();
+            out = new DataOutputStream(new BufferedOutputStream(file));
+        }
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+        out.flush();
+        size += 8 + payload.length;
+        // Appends made in quick succession share one fsync
+        pending = DurableWriter.shared().force(channel);
+        pending.whenComplete((done, e) -> {
+            if (e != null) failed(e);
+        });
+    }
+    
+    private synchronized void failed(Throwable e) {
+        failure = e instanceof IOException ? (IOException) e : new IOException(e);
+    }
+    
+    public boolean needsCompaction() {
+        return size >= COMPACT_THRESHOLD;
+    }
+    
+    public boolean isEmpty() {
+        return generations().isEmpty();
+    }
+    
+    // Closes off the active generation; later appends start a new file. Only hands the file
+    // over, so it is cheap on the UI thread; the sealed generation is made durable by
+    // Sealed.close() on the thread that compacts.
+    public synchronized Sealed seal() {
+        Sealed sealed = new Sealed(generation++, out, channel, pending);
+        out = null;
+        channel = null;
+        pending = null;
+        size = 0;
+        return sealed;
+    }
+    
+    static class Sealed {
+        final long generation;
+        private final DataOutputStream out;
+        private final FileChannel channel;
+        private final CompletableFuture<Void> pending;
+        
+        Sealed(long generation, DataOutputStream out, FileChannel channel, CompletableFuture<Void> pending) {
+            this.generation = generation;
+            this.out = out;
+            this.channel = channel;
+            this.pending = pending;
+        }
+        
+        // Forces the generation to disk and closes it; the last queued force has to finish
+        // first so that the channel does not close under it
+        void close() {
+            if (out == null) return;
+            pending.handle((done, failure) -> null).join();
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                System.err.println("Error syncing journal: " + e.getMessage());
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Error closing journal: " + e.getMessage());
+            }
+        }
+    }
+    
+    // Removes every generation up to and including the given one once a snapshot covers it
+    public synchronized void deleteThrough(long sealed) {
+        for (Map.Entry<Long, File> entry : generations().entrySet()) {
+            if (entry.getKey() <= sealed && !entry.getValue().delete()) {
+                System.err.println("Error deleting journal: " + entry.getValue());
+            }
+        }
+    }
+    
+    // Applies all existing generations in order and returns the number of bytes replayed
+    public long replay(Map<String, Event> events) {
+        long replayed = 0;
+        for (Map.Entry<Long, File> entry : generations().entrySet()) {
+            replayed += replayFile(entry.getValue(), events);
+            generation = Math.max(generation, entry.getKey() + 1);
+        }
+        return replayed;
+    }
+    
+    private long replayFile(File file, Map<String, Event> events) {
+        long offset = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
                 }
+                int expected = in.readInt();
+                if (length < 0) throw new IOException("bad record length at " + offset);
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != expected) throw new IOException("checksum mismatch at " + offset);
+                apply(payload, events);
+                offset += 8 + length;
             }
         } catch (IOException e) {
-            System.err.println("Error loading events: " + e.getMessage());
+            // A torn tail from a crash mid-append: everything before it is still valid
+            System.err.println("Error reading journal " + file.getName() + ": " + e.getMessage());
+        }
+        return offset;
+    }
+    
+    private void apply(byte[] payload, Map<String, Event> events) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = data.readByte();
+        String id = readString(data);
+        if (op == DELETE) {
+            events.remove(id);
+            return;
+        }
+        Event event = new Event(id, readString(data), readDateTime(data), readDateTime(data));
+        event.setDescription(readString(data));
+        try {
+            event.setCategory(EventCategory.valueOf(readString(data)));
+        } catch (IllegalArgumentException e) {
+            event.setCategory(EventCategory.OTHER);
+        }
+        try {
+            event.setPriority(EventPriority.valueOf(readString(data)));
+        } catch (IllegalArgumentException e) {
+            event.setPriority(EventPriority.MEDIUM);
+        }
+        event.setLocation(readString(data));
+        try {
+            event.setReminderTime(ReminderTime.valueOf(readString(data)));
+        } catch (IllegalArgumentException e) {
+            event.setReminderTime(ReminderTime.NONE);
+        }
+        // Records written before events could repeat end here
+        String rule = data.available() > 0 ? readString(data) : "";
+        if (!rule.isEmpty()) {
+            try {
+                event.setRecurrence(RecurrenceRule.decode(rule));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error reading journal: " + e.getMessage());
+            }
+        }
+        events.put(id, event);
+    }
+    
+    private TreeMap<Long, File> generations() {
+        TreeMap<Long, File> files = new TreeMap<>();
+        String prefix = base.getName() + ".";
+        File[] candidates = base.getParentFile().listFiles((dir, name) -> name.startsWith(prefix));
+        if (candidates == null) return files;
+        for (File file : candidates) {
+            try {
+                files.put(Long.parseLong(file.getName().substring(prefix.length())), file);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return files;
+    }
+    
+    private File fileFor(long gen) {
+        return new File(base.getParentFile(), base.getName() + "." + gen);
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+    
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+}
+
+// One day of the month view. The cells are created once and rebound to another date and its
+// events; a cell draws its contents itself, so rebinding never touches the layout, and it only
+// repaints when what it shows has changed.
+class MonthDayCell extends JPanel {
+    private static final Font DAY_FONT = new Font("Arial", Font.PLAIN, 14);
+    private static final Font EVENT_FONT = new Font("Arial", Font.PLAIN, 10);
+    private static final Font MORE_FONT = new Font("Arial", Font.ITALIC, 9);
+    private static final Color OTHER_MONTH = new Color(240, 240, 240);
+    private static final Color TODAY = new Color(255, 255, 200);
+    private static final String[] DAY_NUMBERS = IntStream.rangeClosed(0, 31).mapToObj(String::valueOf).toArray(String[]::new);
+    private static final int SHOWN_EVENTS = 3;
+    
+    private LocalDate date;
+    // The event lines as drawn, and what they were made from; events are changed in place
+    private final String[] lines = new String[SHOWN_EVENTS];
+    private final String[] names = new String[SHOWN_EVENTS];
+    private final Color[] colors = new Color[SHOWN_EVENTS];
+    private int shown;
+    private String more;
+    
+    MonthDayCell() {
+        setBorder(BorderFactory.createLineBorder(Color.GRAY));
+        setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
+    }
+    
+    public LocalDate getDate() {
+        return date;
+    }
+    
+    public void bind(LocalDate date, boolean currentMonth, boolean today, List<Event> events) {
+        boolean changed = !date.equals(this.date);
+        this.date = date;
+        int count = Math.min(SHOWN_EVENTS, events.size());
+        if (count != shown) {
+            shown = count;
+            changed = true;
+        }
+        for (int i = 0; i < count; i++) {
+            Event event = events.get(i);
+            if (!event.getName().equals(names[i]) || event.getCategory().getColor() != colors[i]) {
+                names[i] = event.getName();
+                lines[i] = "• " + event.getName();
+                colors[i] = event.getCategory().getColor();
+                changed = true;
+            }
+        }
+        int hidden = events.size() - count;
+        String moreText = hidden > 0 ? "+" + hidden + " more" : null;
+        if (!Objects.equals(moreText, more)) {
+            more = moreText;
+            changed = true;
+        }
+        // Repaints by itself when the colour is a different one
+        setBackground(today ? TODAY : currentMonth ? Color.WHITE : OTHER_MONTH);
+        if (changed) {
+            repaint();
+        }
+    }
+    
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (date == null) return;
+        Insets insets = getInsets();
+        int width = getWidth() - insets.left - insets.right;
+        
+        g.setColor(getForeground());
+        g.setFont(DAY_FONT);
+        FontMetrics metrics = g.getFontMetrics();
+        String day = DAY_NUMBERS[date.getDayOfMonth()];
+        int y = insets.top + metrics.getAscent();
+        g.drawString(day, insets.left + (width - metrics.stringWidth(day)) / 2, y);
+        y += metrics.getDescent();
+        
+        g.setFont(EVENT_FONT);
+        metrics = g.getFontMetrics();
+        for (int i = 0; i < shown; i++) {
+            y += metrics.getAscent();
+            g.setColor(colors[i]);
+            g.drawString(lines[i], insets.left, y);
+            y += metrics.getDescent();
+        }
+        
+        if (more != null) {
+            g.setFont(MORE_FONT);
+            g.setColor(getForeground());
+            g.drawString(more, insets.left, y + g.getFontMetrics().getAscent());
         }
     }
 }
@@ -833,12 +2168,14 @@ class EventListCellRenderer extends DefaultListCellRenderer {
             DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MMM d, yyyy");
             DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("h:mm a");
             
-            String text = String.format("<html><b>%s</b><br>%s | %s - %s<br><i>%s</i></html>",
+            RecurrenceRule rule = event.getSeries() != null ? event.getSeries().getRecurrence() : event.getRecurrence();
+            String text = String.format("<html><b>%s</b><br>%s | %s - %s<br><i>%s</i>%s</html>",
                 event.getName(),
                 event.getStartDateTime().format(dateFormatter),
                 event.getStartDateTime().format(timeFormatter),
                 event.getEndDateTime().format(timeFormatter),
-                event.getLocation().isEmpty() ? "No location" : event.getLocation()
+                event.getLocation().isEmpty() ? "No location" : event.getLocation(),
+                rule != null ? " | " + rule : ""
             );
             
             label.setText(text);
@@ -0,0 +1,235 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Deflate-compressed blocks for the event stores. Each block holds whole
+// records, so it can be checked and decoded on its own:
+//   [int FRAME_MAGIC][int rawLength][int storedLength][int crc32c of the stored bytes][stored]
+// A block that does not shrink is stored as is (storedLength == rawLength). Blocks are
+// decompressed in parallel on load; a damaged one is reported and skipped, and the file is
+// copied aside so that the next save cannot destroy what is left of it.
+class CompressedBlocks {
+    static final int BLOCK_SIZE = 64 * 1024;
+    private static final int FRAME_MAGIC = 0x4A53424B; // "JSBK"
+    private static final int FRAME_HEADER = 16;
+    private static final long MAX_DEFLATE_RATIO = 1032;
+
+    interface Decoder<T> {
+        void decode(ByteBuffer block, List<T> into) throws IOException;
+    }
+
+    static class Writer implements Closeable {
+        private final WritableByteChannel channel;
+        private final Deflater deflater = new Deflater();
+        private byte[] stored = new byte[BLOCK_SIZE];
+        private int blocks;
+        private long position;
+
+        Writer(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(byte[] raw, int length) throws IOException {
+            deflater.reset();
+            deflater.setInput(raw, 0, length);
+            deflater.finish();
+            if (stored.length < length) stored = new byte[length];
+            int size = 0;
+            while (!deflater.finished() && size < length) {
+                size += deflater.deflate(stored, size, length - size);
+            }
+            byte[] body = deflater.finished() && size < length ? stored : raw;
+            int bodyLength = body == raw ? length : size;
+
+            ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+            header.putInt(FRAME_MAGIC).putInt(length).putInt(bodyLength).putInt(Crc32c.compute(body, 0, bodyLength));
+            header.flip();
+            while (header.hasRemaining()) channel.write(header);
+            ByteBuffer content = ByteBuffer.wrap(body, 0, bodyLength);
+            while (content.hasRemaining()) channel.write(content);
+            blocks++;
+            position += FRAME_HEADER + bodyLength;
+        }
+
+        int blocks() { return blocks; }
+
+        // Bytes written so far, which is where the next frame will start
+        long position() { return position; }
+
+        @Override
+        public void close() { deflater.end(); }
+    }
+
+    // Decodes every intact block of data (positioned at the first frame) in file order
+    static <T> List<T> read(Path file, ByteBuffer data, Decoder<T> decoder) {
+        List<Frame> frames = new ArrayList<>();
+        List<String> problems = new ArrayList<>();
+        int pos = data.position();
+        while (pos < data.limit()) {
+            Frame frame = frameAt(data, pos);
+            if (frame == null) {
+                int next = resync(data, pos + 1);
+                problems.add("unreadable data at offset " + pos + " (" + (next - pos) + " bytes skipped)");
+                pos = next;
+                continue;
+            }
+            frames.add(frame);
+            pos = frame.offset + FRAME_HEADER + frame.storedLength;
+        }
+
+        List<List<T>> decoded = IntStream.range(0, frames.size()).parallel()
+            .mapToObj(i -> decode(data, frames.get(i), decoder))
+            .collect(Collectors.toList());
+        List<T> result = new ArrayList<>();
+        for (int i = 0; i < frames.size(); i++) {
+            if (decoded.get(i) == null) {
+                problems.add("block " + i + " at offset " + frames.get(i).offset + " is corrupt");
+            } else {
+                result.addAll(decoded.get(i));
+            }
+        }
+        if (!problems.isEmpty()) report(file, problems);
+        return result;
+    }
+
+    private static Frame frameAt(ByteBuffer data, int pos) {
+        if (data.limit() - pos < FRAME_HEADER) return null;
+        return parse(data, pos, data.limit() - pos - FRAME_HEADER);
+    }
+
+    // Parses the frame header at pos, given how many bytes follow it; null if it is not plausible
+    private static Frame parse(ByteBuffer data, int pos, long available) {
+        if (data.getInt(pos) != FRAME_MAGIC) return null;
+        int rawLength = data.getInt(pos + 4);
+        int storedLength = data.getInt(pos + 8);
+        if (rawLength < 0 || storedLength < 0 || storedLength > rawLength
+                || rawLength > storedLength * MAX_DEFLATE_RATIO + FRAME_HEADER
+                || storedLength > available) {
+            return null;
+        }
+        return new Frame(pos, rawLength, storedLength, data.getInt(pos + 12));
+    }
+
+    private static int resync(ByteBuffer data, int from) {
+        for (int pos = from; pos <= data.limit() - FRAME_HEADER; pos++) {
+            if (frameAt(data, pos) != null) return pos;
+        }
+        return data.limit();
+    }
+
+    // Reads the single frame starting at offset, for stores that reference frames directly
+    static byte[] readFrame(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+        readFully(channel, header, offset);
+        Frame frame = parse(header, 0, channel.size() - offset - FRAME_HEADER);
+        if (frame == null) throw new IOException("no block at offset " + offset);
+        ByteBuffer stored = ByteBuffer.allocate(frame.storedLength);
+        readFully(channel, stored, offset + FRAME_HEADER);
+        byte[] raw = unpack(frame, stored.array());
+        if (raw == null) throw new IOException("block at offset " + offset + " is corrupt");
+        return raw;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) throw new EOFException("unexpected end of file");
+        }
+    }
+
+    private static <T> List<T> decode(ByteBuffer data, Frame frame, Decoder<T> decoder) {
+        byte[] stored = new byte[frame.storedLength];
+        ByteBuffer slice = data.duplicate();
+        slice.position(frame.offset + FRAME_HEADER);
+        slice.get(stored);
+        byte[] raw = unpack(frame, stored);
+        if (raw == null) return null;
+        List<T> into = new ArrayList<>();
+        try {
+            decoder.decode(ByteBuffer.wrap(raw), into);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+        return into;
+    }
+
+    // Checks and inflates the stored bytes of a frame, or returns null if they are damaged
+    private static byte[] unpack(Frame frame, byte[] stored) {
+        if (Crc32c.compute(stored, 0, stored.length) != frame.crc) return null;
+        if (frame.storedLength == frame.rawLength) return stored;
+        byte[] raw = new byte[frame.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored);
+            if (inflater.inflate(raw) != raw.length || !inflater.finished()) return null;
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    private static void report(Path file, List<String> problems) {
+        for (String problem : problems) {
+            System.err.println("Skipped damaged data in " + file.getFileName() + ": " + problem);
+        }
+        Path copy = file.resolveSibling(file.getFileName() + ".corrupt");
+        try {
+            Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+            System.err.println("A copy of the damaged file was kept as " + copy.getFileName());
+        } catch (IOException e) {
+            System.err.println("Could not keep a copy of " + file.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    private static class Frame {
+        final int offset;
+        final int rawLength;
+        final int storedLength;
+        final int crc;
+
+        Frame(int offset, int rawLength, int storedLength, int crc) {
+            this.offset = offset;
+            this.rawLength = rawLength;
+            this.storedLength = storedLength;
+            this.crc = crc;
+        }
+    }
+
+    // CRC-32C (Castagnoli), which java.util.zip only provides from Java 9 on
+    static final class Crc32c {
+        private static final int[] TABLE = new int[256];
+
+        static {
+            for (int n = 0; n < 256; n++) {
+                int c = n;
+                for (int k = 0; k < 8; k++) {
+                    c = (c & 1) != 0 ? (c >>> 1) ^ 0x82F63B78 : c >>> 1;
+                }
+                TABLE[n] = c;
+            }
+        }
+
+        static int compute(byte[] bytes, int offset, int length) {
+            int crc = ~0;
+            for (int i = offset; i < offset + length; i++) {
+                crc = TABLE[(crc ^ bytes[i]) & 0xFF] ^ (crc >>> 8);
+            }
+            return ~crc;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Crash-safe file replacement. Content goes to a temp file that
+// is forced to disk and renamed over the target, after which the directory is forced too, so
+// a crash leaves either the old file or the new one. Requests arriving within a few
+// milliseconds are committed as one group: repeated writes to a file collapse into the latest,
+// each directory is synced once per group, and force requests on a channel share one fsync.
+class DurableWriter {
+    interface Content {
+        void writeTo(FileChannel channel) throws IOException;
+    }
+
+    private static final long COMMIT_WINDOW_MS = 5;
+    private static final DurableWriter SHARED = new DurableWriter();
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+    private DurableWriter() {
+        Thread committer = new Thread(this::run, "durable-writer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    public static DurableWriter shared() {
+        return SHARED;
+    }
+
+    public CompletableFuture<Void> write(Path target, Content content) {
+        Request request = new Request(target.toAbsolutePath().normalize(), content, null);
+        queue.add(request);
+        return request.future;
+    }
+
+    public void writeAndWait(Path target, Content content) throws IOException {
+        await(write(target, content), target.toString());
+    }
+
+    // Waits for a write or force, rethrowing its failure
+    public static void await(CompletableFuture<Void> future, String what) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while writing " + what);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // Makes everything already written to an append-only channel durable
+    public CompletableFuture<Void> force(FileChannel channel) {
+        Request request = new Request(null, null, channel);
+        queue.add(request);
+        return request.future;
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(COMMIT_WINDOW_MS);
+                Request next;
+                while ((next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null) {
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Request> batch) {
+        Map<Path, List<Request>> writes = new LinkedHashMap<>();
+        Map<FileChannel, List<Request>> forces = new LinkedHashMap<>();
+        for (Request request : batch) {
+            if (request.target != null) {
+                writes.computeIfAbsent(request.target, k -> new ArrayList<>()).add(request);
+            } else {
+                forces.computeIfAbsent(request.channel, k -> new ArrayList<>()).add(request);
+            }
+        }
+
+        List<Request> renamed = new ArrayList<>();
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Map.Entry<Path, List<Request>> entry : writes.entrySet()) {
+            List<Request> group = entry.getValue();
+            try {
+                replace(entry.getKey(), group.get(group.size() - 1).content);
+                directories.add(entry.getKey().getParent());
+                renamed.addAll(group);
+            } catch (Exception e) {
+                group.forEach(r -> r.future.completeExceptionally(e));
+            }
+        }
+        for (Path directory : directories) {
+            syncDirectory(directory);
+        }
+        renamed.forEach(r -> r.future.complete(null));
+
+        for (Map.Entry<FileChannel, List<Request>> entry : forces.entrySet()) {
+            try {
+                entry.getKey().force(false);
+                entry.getValue().forEach(r -> r.future.complete(null));
+            } catch (IOException e) {
+                entry.getValue().forEach(r -> r.future.completeExceptionally(e));
+            }
+        }
+    }
+
+    private static void replace(Path target, Content content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            content.writeTo(channel);
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory (Windows); the rename itself is still atomic
+        }
+    }
+
+    private static class Request {
+        final Path target;
+        final Content content;
+        final FileChannel channel;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Request(Path target, Content content, FileChannel channel) {
+            this.target = target;
+            this.content = content;
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+import java.util.Collections;
+import java.util.List;
+import javax.swing.AbstractListModel;
+
+// A list model that shows a list it is given instead of copying
+// it, typically a manager's sorted view or a search result. Setting new contents replaces the
+// list and tells the JList once, instead of once per removed and added row. The lists using it
+// set a prototype cell value, which fixes both the row height and width from one sample, so
+// the JList does not measure every row again; a fixed height alone would still measure each
+// row for the width. A live view has to be set again after the events change, which the
+// managers' listeners already do.
+class EventListModel<T> extends AbstractListModel<T> {
+    private List<T> items = Collections.emptyList();
+    private int shown;
+
+    public void setItems(List<T> items) {
+        this.items = items;
+        int changed = Math.max(shown, items.size());
+        shown = items.size();
+        if (changed > 0) fireContentsChanged(this, 0, changed - 1);
+    }
+
+    @Override
+    public int getSize() {
+        return items.size();
+    }
+
+    @Override
+    public T getElementAt(int index) {
+        return items.get(index);
+    }
+}
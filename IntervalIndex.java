@@ -0,0 +1,338 @@
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Function;
+
+// Index of items by the time span they cover. It is a treap
+// ordered by start, where every node also knows the latest end in its subtree, so an overlap
+// query only descends into subtrees that can reach the queried range. Items are mutable, so
+// the keys they were filed under are remembered per item (by identity); call update() after
+// changing an item's times. Spans are half-open and an item always covers at least one
+// second, so events without a duration still show up on their start day. Items kept
+// elsewhere, such as the occurrences of repeating events, can be included in every query
+// through a Source.
+class IntervalIndex<T> {
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private final Function<T, LocalDateTime> start;
+    private final Function<T, LocalDateTime> end;
+    private final Map<T, Node<T>> nodes = new IdentityHashMap<>();
+    private final Random random = new Random();
+    private Source<T> outside;
+    private Node<T> root;
+    private long sequence;
+
+    IntervalIndex(Function<T, LocalDateTime> start, Function<T, LocalDateTime> end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public void add(T item) {
+        if (nodes.containsKey(item)) return;
+        long from = seconds(start.apply(item));
+        Node<T> node = new Node<>(item, from, endSeconds(from, end.apply(item)), sequence++, random.nextInt());
+        nodes.put(item, node);
+        root = insert(root, node);
+    }
+
+    public boolean remove(T item) {
+        Node<T> node = nodes.remove(item);
+        if (node == null) return false;
+        root = remove(root, node);
+        return true;
+    }
+
+    public void update(T item) {
+        if (remove(item)) add(item);
+    }
+
+    public void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    // Items the queries report along with the index's own, merged in start order
+    public void include(Source<T> source) {
+        this.outside = source;
+    }
+
+    // Items overlapping [from, to), ordered by start
+    public List<T> overlapping(LocalDateTime from, LocalDateTime to) {
+        List<Node<T>> found = find(seconds(from), seconds(to), null);
+        List<T> result = new ArrayList<>(found.size());
+        for (Node<T> node : found) result.add(node.item);
+        return result;
+    }
+
+    // Items other than ignore that an item from start to end would overlap, ordered by start;
+    // for checking an item before it is added or changed
+    public List<T> conflicting(LocalDateTime start, LocalDateTime end, T ignore) {
+        long from = seconds(start);
+        List<Node<T>> found = find(from, endSeconds(from, end), ignore);
+        List<T> result = new ArrayList<>(found.size());
+        for (Node<T> node : found) {
+            if (node.item != ignore) result.add(node.item);
+        }
+        return result;
+    }
+
+    // Every pair of overlapping items within [from, to), from one sweep over the items in start
+    // order while a heap ordered by end holds the ones still running. Each pair is reported
+    // once, the item that starts first being first.
+    public List<Conflict<T>> conflicts(LocalDateTime from, LocalDateTime to) {
+        List<Node<T>> found = find(seconds(from), seconds(to), null);
+        PriorityQueue<Node<T>> running = new PriorityQueue<>((a, b) -> Long.compare(a.end, b.end));
+        List<Conflict<T>> result = new ArrayList<>();
+        for (Node<T> node : found) {
+            while (!running.isEmpty() && running.peek().end <= node.start) running.poll();
+            for (Node<T> other : running) result.add(new Conflict<>(other.item, node.item));
+            running.add(node);
+        }
+        return result;
+    }
+
+    // The first free stretches of at least the given length within [from, to), earliest first,
+    // looking only at the hours from dayStart to dayEnd of the given days. Each day's window is
+    // one range query whose items, in start order, are merged into busy spans on the fly, so
+    // the walk stops as soon as enough stretches are found. The ignored item and items without
+    // a duration, which only mark a moment, do not count as busy.
+    public List<Span> free(LocalDateTime from, LocalDateTime to, Duration length, Set<DayOfWeek> days,
+            LocalTime dayStart, LocalTime dayEnd, T ignore, int limit) {
+        List<Span> result = new ArrayList<>();
+        long needed = Math.max(1, length.getSeconds());
+        for (LocalDate day = from.toLocalDate(); !day.atStartOfDay().isAfter(to) && result.size() < limit; day = day.plusDays(1)) {
+            if (!days.contains(day.getDayOfWeek())) continue;
+            long windowStart = Math.max(seconds(from), seconds(day.atTime(dayStart)));
+            long windowEnd = Math.min(seconds(to), seconds(day.atTime(dayEnd)));
+            if (windowEnd - windowStart < needed) continue;
+            List<Node<T>> found = find(windowStart, windowEnd, ignore);
+            long cursor = windowStart;
+            for (Node<T> node : found) {
+                if (node.item == ignore || node.end - node.start <= 1) continue;
+                if (node.start - cursor >= needed) {
+                    result.add(new Span(cursor, node.start));
+                    if (result.size() == limit) return result;
+                }
+                cursor = Math.max(cursor, node.end);
+            }
+            if (windowEnd - cursor >= needed) result.add(new Span(cursor, windowEnd));
+        }
+        return result;
+    }
+
+    public List<T> on(LocalDate date) {
+        return overlapping(date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+    }
+
+    // Every item overlapping the days from first on, bucketed by day in one query; an item
+    // lands in each day it covers, and each day keeps the start order
+    public DayBuckets<T> byDay(LocalDate first, int days) {
+        long windowStart = seconds(first.atStartOfDay());
+        List<Node<T>> found = find(windowStart, windowStart + days * SECONDS_PER_DAY, null);
+        List<List<T>> buckets = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) buckets.add(new ArrayList<>());
+        for (Node<T> node : found) {
+            int from = (int) Math.max(0, Math.floorDiv(node.start - windowStart, SECONDS_PER_DAY));
+            int to = (int) Math.min(days - 1, Math.floorDiv(node.end - 1 - windowStart, SECONDS_PER_DAY));
+            for (int day = from; day <= to; day++) buckets.get(day).add(node.item);
+        }
+        return new DayBuckets<>(first, buckets);
+    }
+
+    // The nodes overlapping [from, to) in start order, with the outside items other than
+    // ignore merged in as nodes of their own
+    private List<Node<T>> find(long from, long to, T ignore) {
+        List<Node<T>> found = new ArrayList<>();
+        collect(root, from, to, found);
+        if (outside == null) return found;
+        List<T> extra = outside.overlapping(time(from), time(to), ignore);
+        if (extra.isEmpty()) return found;
+        List<Node<T>> merged = new ArrayList<>(found.size() + extra.size());
+        int i = 0;
+        for (T item : extra) {
+            long itemStart = seconds(start.apply(item));
+            while (i < found.size() && found.get(i).start <= itemStart) merged.add(found.get(i++));
+            merged.add(new Node<>(item, itemStart, endSeconds(itemStart, end.apply(item)), 0, 0));
+        }
+        while (i < found.size()) merged.add(found.get(i++));
+        return merged;
+    }
+
+    private static long seconds(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime time(long seconds) {
+        return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+    }
+
+    // Rounds up to whole seconds and keeps at least one second after the start
+    private static long endSeconds(long from, LocalDateTime until) {
+        return Math.max(from + 1, seconds(until) + (until.getNano() > 0 ? 1 : 0));
+    }
+
+    private static <T> void collect(Node<T> node, long from, long to, List<Node<T>> into) {
+        if (node == null || node.maxEnd <= from) return;
+        collect(node.left, from, to, into);
+        if (node.start >= to) return;
+        if (node.end > from) into.add(node);
+        collect(node.right, from, to, into);
+    }
+
+    private static <T> Node<T> insert(Node<T> root, Node<T> node) {
+        if (root == null) return node;
+        if (node.before(root)) {
+            root.left = insert(root.left, node);
+            if (root.left.priority > root.priority) root = rotateRight(root);
+        } else {
+            root.right = insert(root.right, node);
+            if (root.right.priority > root.priority) root = rotateLeft(root);
+        }
+        root.update();
+        return root;
+    }
+
+    private static <T> Node<T> remove(Node<T> root, Node<T> node) {
+        if (root == node) return merge(root.left, root.right);
+        if (node.before(root)) {
+            root.left = remove(root.left, node);
+        } else {
+            root.right = remove(root.right, node);
+        }
+        root.update();
+        return root;
+    }
+
+    // Joins two treaps where every node of a comes before every node of b
+    private static <T> Node<T> merge(Node<T> a, Node<T> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.update();
+            return a;
+        }
+        b.left = merge(a, b.left);
+        b.update();
+        return b;
+    }
+
+    private static <T> Node<T> rotateRight(Node<T> node) {
+        Node<T> left = node.left;
+        node.left = left.right;
+        node.update();
+        left.right = node;
+        return left;
+    }
+
+    private static <T> Node<T> rotateLeft(Node<T> node) {
+        Node<T> right = node.right;
+        node.right = right.left;
+        node.update();
+        right.left = node;
+        return right;
+    }
+
+    interface Source<T> {
+        // Items overlapping [from, to) other than ignore, ordered by start
+        List<T> overlapping(LocalDateTime from, LocalDateTime to, T ignore);
+    }
+
+    static class Span {
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+
+        Span(long start, long end) {
+            this.start = LocalDateTime.ofEpochSecond(start, 0, ZoneOffset.UTC);
+            this.end = LocalDateTime.ofEpochSecond(end, 0, ZoneOffset.UTC);
+        }
+
+        public LocalDateTime getStart() { return start; }
+        public LocalDateTime getEnd() { return end; }
+    }
+
+    static class Conflict<T> {
+        private final T first;
+        private final T second;
+
+        Conflict(T first, T second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        public T getFirst() { return first; }
+        public T getSecond() { return second; }
+    }
+
+    static class DayBuckets<T> {
+        private final LocalDate first;
+        private final List<List<T>> days;
+
+        DayBuckets(LocalDate first, List<List<T>> days) {
+            this.first = first;
+            this.days = days;
+        }
+
+        public LocalDate getFirstDay() { return first; }
+        public int getDayCount() { return days.size(); }
+
+        // The events on date; empty for days outside the window
+        public List<T> get(LocalDate date) {
+            long day = date.toEpochDay() - first.toEpochDay();
+            return day >= 0 && day < days.size() ? days.get((int) day) : new ArrayList<>();
+        }
+
+        public int count(LocalDate date) {
+            return get(date).size();
+        }
+
+        public void sort(Comparator<? super T> order) {
+            for (List<T> day : days) day.sort(order);
+        }
+    }
+
+    private static class Node<T> {
+        final T item;
+        final long start;
+        final long end;
+        final long sequence;
+        final int priority;
+        long maxEnd;
+        Node<T> left;
+        Node<T> right;
+
+        Node(T item, long start, long end, long sequence, int priority) {
+            this.item = item;
+            this.start = start;
+            this.end = end;
+            this.sequence = sequence;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+
+        boolean before(Node<T> other) {
+            return start < other.start || (start == other.start && sequence < other.sequence);
+        }
+
+        void update() {
+            maxEnd = end;
+            if (left != null) maxEnd = Math.max(maxEnd, left.maxEnd);
+            if (right != null) maxEnd = Math.max(maxEnd, right.maxEnd);
+        }
+    }
+}
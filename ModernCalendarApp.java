@@ -9,36 +9,72 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.GridLayout;
 import java.awt.RenderingHints;
+import java.awt.Toolkit;
 import java.awt.Window;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.YearMonth;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.DefaultListModel;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JDialog;
@@ -96,19 +132,25 @@ public class ModernCalendarApp {
     // ==========================================
     // PROFILE MANAGEMENT
     // ==========================================
+    // Serializable only so that files from older versions can be migrated by StorageCodec
     static class Profile implements Serializable {
         private static final long serialVersionUID = 1L;
         private String id;
         private String name;
         
         public Profile(String name) {
-            this.id = UUID.randomUUID().toString();
+            this(UUID.randomUUID().toString(), name);
+        }
+        
+        Profile(String id, String name) {
+            this.id = id;
             this.name = name;
         }
         
         public String getId() { return id; }
         public String getName() { return name; }
         public String getFileName() { return "events_" + id + ".dat"; }
+        public String getSegmentDirectory() { return "events_" + id; }
         
         @Override
         public String toString() { return name; }
@@ -158,6 +200,7 @@ public class ModernCalendarApp {
             profiles.remove(profile);
             File eventFile = new File(profile.getFileName());
             if (eventFile.exists()) eventFile.delete();
+            MonthSegments.deleteAll(new File(profile.getSegmentDirectory()));
             if (activeProfile.equals(profile)) {
                 activeProfile = profiles.get(0);
                 saveActiveProfile();
@@ -169,27 +212,26 @@ public class ModernCalendarApp {
         public void addListener(Runnable r) { listeners.add(r); }
         private void notifyListeners() { listeners.forEach(Runnable::run); }
         
-        @SuppressWarnings("unchecked")
         private void loadProfiles() {
             File f = new File(PROFILES_FILE);
             if (f.exists()) {
-                try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(f))) {
-                    profiles = (List<Profile>) ois.readObject();
+                try {
+                    profiles = StorageCodec.readProfiles(f);
                 } catch (Exception e) { profiles = new ArrayList<>(); }
             }
         }
         
         private void saveProfiles() {
-            try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(PROFILES_FILE))) {
-                oos.writeObject(profiles);
+            try {
+                StorageCodec.writeProfiles(new File(PROFILES_FILE), profiles);
             } catch (IOException e) { e.printStackTrace(); }
         }
         
         private void loadActiveProfile() {
             File f = new File(ACTIVE_PROFILE_FILE);
             if (f.exists()) {
-                try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(f))) {
-                    String activeId = (String) ois.readObject();
+                try {
+                    String activeId = StorageCodec.readActiveProfile(f);
                     activeProfile = profiles.stream().filter(p -> p.getId().equals(activeId))
                         .findFirst().orElse(profiles.isEmpty() ? null : profiles.get(0));
                 } catch (Exception e) { 
@@ -202,8 +244,8 @@ public class ModernCalendarApp {
         
         private void saveActiveProfile() {
             if (activeProfile != null) {
-                try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(ACTIVE_PROFILE_FILE))) {
-                    oos.writeObject(activeProfile.getId());
+                try {
+                    StorageCodec.writeActiveProfile(new File(ACTIVE_PROFILE_FILE), activeProfile.getId());
                 } catch (IOException e) { e.printStackTrace(); }
             }
         }
@@ -222,6 +264,22 @@ public class ModernCalendarApp {
         EventPriority(String label, Color color) { this.label = label; this.color = color; }
     }
 
+    enum ReminderTime {
+        NONE("No reminder", null),
+        MINUTES_15("15 minutes before", Duration.ofMinutes(15)),
+        HOUR_1("1 hour before", Duration.ofHours(1)),
+        DAY_1("1 day before", Duration.ofDays(1));
+
+        final String label;
+        // How long before the start the reminder is due, null for none
+        final Duration lead;
+        ReminderTime(String label, Duration lead) { this.label = label; this.lead = lead; }
+
+        @Override
+        public String toString() { return label; }
+    }
+
+    // Serializable only so that files from older versions can be migrated by StorageCodec
     static class CalendarEvent implements Serializable {
         private static final long serialVersionUID = 1L;
         private String id;
@@ -230,108 +288,1039 @@ public class ModernCalendarApp {
         private LocalDateTime end;
         private EventPriority priority;
         private String description;
+        private ReminderTime reminder = ReminderTime.NONE;
+        private transient BlobStore.Ref descriptionRef;
+        private transient RecurrenceRule recurrence;
+        private transient CalendarEvent series;
 
         public CalendarEvent(String title, LocalDateTime start, LocalDateTime end, EventPriority priority, String description) {
-            this.id = UUID.randomUUID().toString();
+            this(UUID.randomUUID().toString(), title, start, end, priority, description);
+        }
+        
+        CalendarEvent(String id, String title, LocalDateTime start, LocalDateTime end, EventPriority priority, String description) {
+            this.id = id;
             this.title = title;
             this.start = start;
             this.end = end;
             this.priority = priority;
             this.description = description;
         }
+
+        // A copy of the stored fields, for handing the event to another thread
+        CalendarEvent(CalendarEvent other) {
+            this(other.id, other.title, other.start, other.end, other.priority, other.description);
+            this.descriptionRef = other.descriptionRef;
+            this.reminder = other.reminder;
+            this.recurrence = other.recurrence;
+        }
         
         public String getId() { return id; }
         public String getTitle() { return title; }
         public void setTitle(String t) { this.title = t; }
         public LocalDateTime getStart() { return start; }
         public void setStart(LocalDateTime s) { this.start = s; }
+        public LocalDateTime getEnd() { return end; }
+        public void setEnd(LocalDateTime e) { this.end = e; }
         public EventPriority getPriority() { return priority; }
         public void setPriority(EventPriority p) { this.priority = p; }
-        public String getDescription() { return description; }
-        public void setDescription(String d) { this.description = d; }
+        // Events serialized before reminders existed come back without one
+        public ReminderTime getReminder() { return reminder != null ? reminder : ReminderTime.NONE; }
+        public void setReminder(ReminderTime r) { this.reminder = r; }
+        // Stored descriptions stay in their blob file until first asked for
+        public String getDescription() { return descriptionRef != null ? BlobStore.get(descriptionRef) : description; }
+        public void setDescription(String d) { this.description = d; this.descriptionRef = null; }
+        BlobStore.Ref getDescriptionRef() { return descriptionRef; }
+        void setDescriptionRef(BlobStore.Ref ref) { this.descriptionRef = ref; this.description = null; }
+        // Set on the event that repeats; its occurrences have none but know their series
+        public RecurrenceRule getRecurrence() { return recurrence; }
+        public void setRecurrence(RecurrenceRule r) { this.recurrence = r; }
+        public CalendarEvent getSeries() { return series; }
+
+        // A copy standing for the occurrence of this repeating event that starts at s
+        CalendarEvent occurrenceAt(LocalDateTime s) {
+            CalendarEvent occurrence = new CalendarEvent(id, title, s, s.plus(Duration.between(start, end)), priority, description);
+            occurrence.descriptionRef = descriptionRef;
+            occurrence.reminder = reminder;
+            occurrence.series = this;
+            return occurrence;
+        }
+    }
+
+    // ==========================================
+    // STORAGE CODEC
+    // ==========================================
+    // Every file starts with a fixed magic, a kind byte and a varint schema version. Files
+    // written with Java serialization by older versions are detected by their stream header,
+    // read once and rewritten in this format. Since version 2 the events follow the header
+    // as CompressedBlocks of whole events; version 1 stored a count and the events as is.
+    // Since version 3 descriptions live in a BlobStore file whose generation follows the
+    // header, and each event holds 0 for none, 1 for empty or the blob offset plus 2. Since
+    // version 4 each event ends with the rule of a repeating event, or no string, and since
+    // version 5 the rule is followed by the reminder.
+    static class StorageCodec {
+        static final int VERSION = 5;
+        private static final int MAGIC = 0x4A53434D; // "JSCM"
+        private static final int KIND_EVENTS = 1;
+        private static final int KIND_PROFILES = 2;
+        private static final int KIND_ACTIVE_PROFILE = 3;
+        private static final int ID_UUID = 0;
+        private static final int ID_STRING = 1;
+
+        // Event files from before month segments are only ever read; loadAsync converts them
+        public static List<CalendarEvent> readEvents(File f) throws IOException {
+            if (isSerialized(f)) return readSerialized(f);
+            Input in = new Input(ByteBuffer.wrap(Files.readAllBytes(f.toPath())), f.getName(), KIND_EVENTS);
+            long version = in.version;
+            File blob = null;
+            if (version >= 3) {
+                blob = BlobStore.open(f, in.readVarLong());
+            }
+            File blobFile = blob;
+            if (version >= 2) {
+                return CompressedBlocks.read(f.toPath(), in.remaining(), (block, into) -> {
+                    Input events = new Input(block);
+                    while (events.hasRemaining()) into.add(readEvent(events, version, blobFile));
+                });
+            }
+            int count = in.readCount();
+            List<CalendarEvent> events = new ArrayList<>(Math.min(count, 1 << 16));
+            for (int i = 0; i < count; i++) {
+                events.add(readEvent(in, version, null));
+            }
+            return events;
+        }
+
+        // The blob generation the event file refers to, 0 for none
+        public static long blobGeneration(File f) throws IOException {
+            if (isSerialized(f)) return 0;
+            try (Input in = new Input(f, KIND_EVENTS)) {
+                return in.version >= 3 ? in.readVarLong() : 0;
+            }
+        }
+
+        // The blob file is written first, so the events never refer to one that is missing.
+        // Returns the blob generation written.
+        public static long writeEvents(File f, List<CalendarEvent> events) throws IOException {
+            long[] descriptions = new long[events.size()];
+            long blobGeneration = BlobStore.write(f, events, CalendarEvent::getDescriptionRef, CalendarEvent::getDescription, descriptions);
+            DurableWriter.shared().writeAndWait(f.toPath(), channel -> {
+                Output header = new Output(channel, KIND_EVENTS);
+                header.writeVarLong(blobGeneration);
+                header.flush();
+                ByteArrayOutputStream block = new ByteArrayOutputStream();
+                Output out = new Output(Channels.newChannel(block));
+                try (CompressedBlocks.Writer blocks = new CompressedBlocks.Writer(channel)) {
+                    for (int i = 0; i < events.size(); i++) {
+                        writeEvent(out, events.get(i), descriptions[i]);
+                        if (block.size() + out.pending() >= CompressedBlocks.BLOCK_SIZE) {
+                            out.flush();
+                            blocks.write(block.toByteArray(), block.size());
+                            block.reset();
+                        }
+                    }
+                    out.flush();
+                    if (block.size() > 0) blocks.write(block.toByteArray(), block.size());
+                }
+            });
+            return blobGeneration;
+        }
+
+        private static CalendarEvent readEvent(Input in, long version, File blob) throws IOException {
+            EventPriority[] priorities = EventPriority.values();
+            String id = in.readId();
+            String title = in.readString();
+            LocalDateTime start = in.readDateTime();
+            LocalDateTime end = LocalDateTime.ofEpochSecond(
+                start.toEpochSecond(ZoneOffset.UTC) + in.readSignedVarLong(), (int) in.readVarLong(), ZoneOffset.UTC);
+            int priority = (int) in.readVarLong();
+            if (priority < 0 || priority >= priorities.length) throw new IOException("bad priority " + priority);
+            if (version < 3) return new CalendarEvent(id, title, start, end, priorities[priority], in.readString());
+            long description = in.readVarLong();
+            CalendarEvent event = new CalendarEvent(id, title, start, end, priorities[priority], description == 1 ? "" : null);
+            if (description >= 2) event.setDescriptionRef(new BlobStore.Ref(blob, description - 2));
+            String rule = version >= 4 ? in.readString() : null;
+            if (rule != null) {
+                try {
+                    event.setRecurrence(RecurrenceRule.decode(rule));
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage());
+                }
+            }
+            if (version >= 5) {
+                ReminderTime[] reminders = ReminderTime.values();
+                int reminder = (int) in.readVarLong();
+                if (reminder < 0 || reminder >= reminders.length) throw new IOException("bad reminder " + reminder);
+                event.setReminder(reminders[reminder]);
+            }
+            return event;
+        }
+
+        // description is the blob offset from BlobStore.write, -1 when the text was null or empty
+        private static void writeEvent(Output out, CalendarEvent e, long description) throws IOException {
+            out.writeId(e.getId());
+            out.writeString(e.getTitle());
+            out.writeDateTime(e.getStart());
+            out.writeSignedVarLong(e.getEnd().toEpochSecond(ZoneOffset.UTC) - e.getStart().toEpochSecond(ZoneOffset.UTC));
+            out.writeVarLong(e.getEnd().getNano());
+            out.writeVarLong(e.getPriority().ordinal());
+            out.writeVarLong(description >= 0 ? description + 2 : e.getDescription() == null ? 0 : 1);
+            out.writeString(e.getRecurrence() != null ? e.getRecurrence().encode() : null);
+            out.writeVarLong(e.getReminder().ordinal());
+        }
+
+        public static List<Profile> readProfiles(File f) throws IOException {
+            if (isSerialized(f)) {
+                List<Profile> profiles = readSerialized(f);
+                writeProfiles(f, profiles);
+                return profiles;
+            }
+            try (Input in = new Input(f, KIND_PROFILES)) {
+                int count = in.readCount();
+                List<Profile> profiles = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    profiles.add(new Profile(in.readId(), in.readString()));
+                }
+                return profiles;
+            }
+        }
+
+        public static void writeProfiles(File f, List<Profile> profiles) throws IOException {
+            DurableWriter.shared().writeAndWait(f.toPath(), channel -> {
+                Output out = new Output(channel, KIND_PROFILES);
+                out.writeVarLong(profiles.size());
+                for (Profile p : profiles) {
+                    out.writeId(p.getId());
+                    out.writeString(p.getName());
+                }
+                out.flush();
+            });
+        }
+
+        public static String readActiveProfile(File f) throws IOException {
+            if (isSerialized(f)) {
+                String id = readSerialized(f);
+                writeActiveProfile(f, id);
+                return id;
+            }
+            try (Input in = new Input(f, KIND_ACTIVE_PROFILE)) {
+                return in.readId();
+            }
+        }
+
+        public static void writeActiveProfile(File f, String id) throws IOException {
+            DurableWriter.shared().writeAndWait(f.toPath(), channel -> {
+                Output out = new Output(channel, KIND_ACTIVE_PROFILE);
+                out.writeId(id);
+                out.flush();
+            });
+        }
+
+        private static boolean isSerialized(File f) throws IOException {
+            try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                ByteBuffer head = ByteBuffer.allocate(2);
+                while (head.hasRemaining() && channel.read(head) >= 0) { }
+                return head.position() == 2 && head.getShort(0) == ObjectStreamConstants.STREAM_MAGIC;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T readSerialized(File f) throws IOException {
+            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(f))) {
+                return (T) ois.readObject();
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException("cannot migrate " + f.getName(), e);
+            }
+        }
+
+        static class Output {
+            private final WritableByteChannel channel;
+            private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+            Output(WritableByteChannel channel) {
+                this.channel = channel;
+            }
+
+            Output(WritableByteChannel channel, int kind) throws IOException {
+                this(channel);
+                buffer.putInt(MAGIC);
+                buffer.put((byte) kind);
+                writeVarLong(VERSION);
+            }
+
+            void writeVarLong(long v) throws IOException {
+                ensure(10);
+                while ((v & ~0x7FL) != 0) {
+                    buffer.put((byte) ((v & 0x7F) | 0x80));
+                    v >>>= 7;
+                }
+                buffer.put((byte) v);
+            }
+
+            void writeSignedVarLong(long v) throws IOException { writeVarLong((v << 1) ^ (v >> 63)); }
+
+            void writeString(String s) throws IOException {
+                if (s == null) { writeVarLong(0); return; }
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(bytes.length + 1L);
+                for (int off = 0; off < bytes.length; ) {
+                    ensure(1);
+                    int n = Math.min(buffer.remaining(), bytes.length - off);
+                    buffer.put(bytes, off, n);
+                    off += n;
+                }
+            }
+
+            // Random UUIDs, which is what the app generates, take 16 bytes instead of 36
+            void writeId(String id) throws IOException {
+                UUID uuid = parseUuid(id);
+                if (uuid == null) {
+                    writeVarLong(ID_STRING);
+                    writeString(id);
+                } else {
+                    writeVarLong(ID_UUID);
+                    ensure(16);
+                    buffer.putLong(uuid.getMostSignificantBits());
+                    buffer.putLong(uuid.getLeastSignificantBits());
+                }
+            }
+
+            void writeDateTime(LocalDateTime dt) throws IOException {
+                writeSignedVarLong(dt.toEpochSecond(ZoneOffset.UTC));
+                writeVarLong(dt.getNano());
+            }
+
+            private void ensure(int n) throws IOException {
+                if (buffer.remaining() < n) flush();
+            }
+
+            int pending() { return buffer.position(); }
+
+            void flush() throws IOException {
+                buffer.flip();
+                while (buffer.hasRemaining()) channel.write(buffer);
+                buffer.clear();
+            }
+
+            private static UUID parseUuid(String id) {
+                try {
+                    UUID uuid = UUID.fromString(id);
+                    return uuid.toString().equals(id) ? uuid : null;
+                } catch (IllegalArgumentException e) { return null; }
+            }
+        }
+
+        static class Input implements Closeable {
+            private final FileChannel channel;
+            private final ByteBuffer buffer;
+            long version;
+
+            Input(File f, int kind) throws IOException {
+                channel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+                buffer = ByteBuffer.allocate(64 * 1024);
+                buffer.flip();
+                try {
+                    readHeader(f.getName(), kind);
+                } catch (IOException e) {
+                    channel.close();
+                    throw e;
+                }
+            }
+
+            Input(ByteBuffer data, String name, int kind) throws IOException {
+                this(data);
+                readHeader(name, kind);
+            }
+
+            // Reads data that has no header of its own, such as a block
+            Input(ByteBuffer data) {
+                channel = null;
+                buffer = data;
+            }
+
+            private void readHeader(String name, int kind) throws IOException {
+                require(5);
+                if (buffer.getInt() != MAGIC || buffer.get() != kind) throw new IOException(name + " has an unknown format");
+                version = readVarLong();
+                if (version > VERSION) throw new IOException(name + " was written by a newer version (" + version + ")");
+            }
+
+            boolean hasRemaining() throws IOException {
+                if (buffer.hasRemaining() || channel == null) return buffer.hasRemaining();
+                buffer.compact();
+                int n = channel.read(buffer);
+                buffer.flip();
+                return n > 0;
+            }
+
+            ByteBuffer remaining() { return buffer.slice(); }
+
+            long readVarLong() throws IOException {
+                long result = 0;
+                for (int shift = 0; shift < 64; shift += 7) {
+                    require(1);
+                    byte b = buffer.get();
+                    result |= (long) (b & 0x7F) << shift;
+                    if ((b & 0x80) == 0) return result;
+                }
+                throw new IOException("malformed varint");
+            }
+
+            long readSignedVarLong() throws IOException {
+                long v = readVarLong();
+                return (v >>> 1) ^ -(v & 1);
+            }
+
+            int readCount() throws IOException {
+                long count = readVarLong();
+                if (count > Integer.MAX_VALUE) throw new IOException("bad count " + count);
+                return (int) count;
+            }
+
+            String readString() throws IOException {
+                long length = readVarLong() - 1;
+                if (length < 0) return null;
+                if (length > Integer.MAX_VALUE || (channel == null && length > buffer.remaining())) {
+                    throw new IOException("bad string length " + length);
+                }
+                byte[] bytes = new byte[(int) length];
+                for (int off = 0; off < bytes.length; ) {
+                    require(1);
+                    int n = Math.min(buffer.remaining(), bytes.length - off);
+                    buffer.get(bytes, off, n);
+                    off += n;
+                }
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            String readId() throws IOException {
+                long kind = readVarLong();
+                if (kind == ID_STRING) return readString();
+                if (kind != ID_UUID) throw new IOException("bad id kind " + kind);
+                require(16);
+                return new UUID(buffer.getLong(), buffer.getLong()).toString();
+            }
+
+            LocalDateTime readDateTime() throws IOException {
+                long seconds = readSignedVarLong();
+                return LocalDateTime.ofEpochSecond(seconds, (int) readVarLong(), ZoneOffset.UTC);
+            }
+
+            private void require(int n) throws IOException {
+                if (buffer.remaining() >= n) return;
+                if (channel == null) throw new EOFException("unexpected end of data");
+                buffer.compact();
+                while (buffer.position() < n) {
+                    if (channel.read(buffer) < 0) throw new EOFException("unexpected end of file");
+                }
+                buffer.flip();
+            }
+
+            @Override
+            public void close() throws IOException { if (channel != null) channel.close(); }
+        }
     }
 
     // ==========================================
     // EVENT MANAGER
     // ==========================================
     static class EventManager {
+        private static final int DEFAULT_SAVE_DELAY_MS = 500;
+        // Working hours used when suggesting a time
+        private static final Set<DayOfWeek> WORK_DAYS = EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY);
+        private static final LocalTime WORK_START = LocalTime.of(9, 0);
+        private static final LocalTime WORK_END = LocalTime.of(17, 0);
+        private static final int SUGGEST_DAYS = 14;
+        private static final Comparator<CalendarEvent> DAY_ORDER =
+            Comparator.comparing(CalendarEvent::getPriority).thenComparing(CalendarEvent::getStart);
         private List<CalendarEvent> events = new ArrayList<>();
         private List<Runnable> listeners = new ArrayList<>();
         private ProfileManager profileManager;
+        private Profile loadedProfile;
+        private final Reminders reminders;
+        private Reminders.ProfileReminders loadedReminders;
+        // Changes waiting for the profile being loaded, null when none is
+        private List<Runnable> queued;
+        private int loads;
+
+        // Events live in one segment file per month under the profile's directory. Only the
+        // months around the one on screen are read up front, later ones follow in the
+        // background and earlier ones when the calendar is navigated to them.
+        private MonthSegments segments;
+        private Map<CalendarEvent, YearMonth> segmentOf = new HashMap<>();
+        // Repeating events are kept here instead of in the index, which reports their occurrences
+        private final Occurrences<CalendarEvent> occurrences = new Occurrences<>(
+            CalendarEvent::getStart, CalendarEvent::getEnd, CalendarEvent::getRecurrence, CalendarEvent::occurrenceAt);
+        private IntervalIndex<CalendarEvent> index = newIndex();
+        private TextIndex<CalendarEvent> text = new TextIndex<>();
+        private SortedView<CalendarEvent> byStart = new SortedView<>(Comparator.comparing(CalendarEvent::getStart));
+        private SortedView<CalendarEvent> byPriority = new SortedView<>(DAY_ORDER);
+        private BitmapIndex<CalendarEvent> attributes = new BitmapIndex<>(CalendarEvent::getPriority, CalendarEvent::getReminder);
+
+        // Mutations only mark their months dirty and restart the debounce timer; when it fires,
+        // one snapshot of those months is handed to the single persistence thread, so
+        // writes never overlap and always land in mutation order.
+        private final ExecutorService persistence = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "calendar-persistence");
+            t.setDaemon(true);
+            return t;
+        });
+        private final javax.swing.Timer saveTimer;
+        private Future<?> lastWrite = CompletableFuture.completedFuture(null);
 
         public EventManager(ProfileManager profileManager) {
+            this(profileManager, DEFAULT_SAVE_DELAY_MS);
+        }
+
+        public EventManager(ProfileManager profileManager, int saveDelayMillis) {
             this.profileManager = profileManager;
+            this.reminders = new Reminders(profileManager);
+            saveTimer = new javax.swing.Timer(saveDelayMillis, e -> writeSnapshot());
+            saveTimer.setRepeats(false);
         }
 
-        public void addEvent(CalendarEvent e) { events.add(e); update(); }
-        public void removeEvent(CalendarEvent e) { events.remove(e); update(); }
+        // Changes made while a profile is loading wait until it is in and are then applied to it
+        public void addEvent(CalendarEvent e) {
+            if (queued != null) { queued.add(() -> addEvent(e)); return; }
+            events.add(e); track(e, words(e)); file(e); update();
+        }
+        public void removeEvent(CalendarEvent e) {
+            if (queued != null) { queued.add(() -> removeEvent(e)); return; }
+            events.remove(e); untrack(e); unfile(e); update();
+        }
         public void updateEvent(CalendarEvent original, CalendarEvent updated) {
+            if (queued != null) { queued.add(() -> updateEvent(original, updated)); return; }
             int idx = events.indexOf(original);
-            if (idx >= 0) { events.set(idx, updated); update(); }
+            if (idx >= 0) {
+                events.set(idx, updated);
+                untrack(original);
+                track(updated, words(updated));
+                unfile(original);
+                file(updated);
+                update();
+            }
+        }
+
+        // Leaves the date of one occurrence out of its series
+        public void skipOccurrence(CalendarEvent occurrence) {
+            CalendarEvent series = occurrence.getSeries();
+            series.setRecurrence(series.getRecurrence().except(occurrence.getStart().toLocalDate()));
+            updateEvent(series, series);
+        }
+
+        // Replaces one occurrence by an event of its own, which can then be changed on its own
+        public CalendarEvent detachOccurrence(CalendarEvent occurrence) {
+            skipOccurrence(occurrence);
+            CalendarEvent single = new CalendarEvent(occurrence.getTitle(), occurrence.getStart(), occurrence.getEnd(),
+                occurrence.getPriority(), occurrence.getDescription());
+            single.setReminder(occurrence.getReminder());
+            addEvent(single);
+            return single;
+        }
+
+        // Every lookup structure follows the event list
+        private void track(CalendarEvent e, String[] words) {
+            if (e.getRecurrence() != null) occurrences.add(e); else index.add(e);
+            text.add(e, words);
+            byStart.add(e);
+            byPriority.add(e);
+            attributes.add(e);
+            if (loadedReminders != null) loadedReminders.add(e);
+        }
+
+        private void untrack(CalendarEvent e) {
+            index.remove(e);
+            occurrences.remove(e);
+            text.remove(e);
+            byStart.remove(e);
+            byPriority.remove(e);
+            attributes.remove(e);
+            if (loadedReminders != null) loadedReminders.remove(e);
+        }
+
+        private IntervalIndex<CalendarEvent> newIndex() {
+            IntervalIndex<CalendarEvent> created = new IntervalIndex<>(CalendarEvent::getStart, CalendarEvent::getEnd);
+            created.include(occurrences);
+            return created;
         }
 
+        private static String[] words(CalendarEvent e) {
+            BlobStore.Ref ref = e.getDescriptionRef();
+            return TextIndex.words(e.getTitle(), ref != null ? BlobStore.peek(ref) : e.getDescription());
+        }
+
+        // Every event that overlaps the day, including ones that started on an earlier day and
+        // occurrences of repeating events
         public List<CalendarEvent> getEvents(LocalDate date) {
-            return events.stream()
-                .filter(e -> e.getStart().toLocalDate().equals(date))
-                .sorted(Comparator.comparing(CalendarEvent::getPriority).thenComparing(CalendarEvent::getStart))
-                .collect(Collectors.toList());
+            List<CalendarEvent> result = index.on(date);
+            result.sort(DAY_ORDER);
+            return result;
+        }
+
+        // All events of a run of days (such as the 42 cells of the month grid) from one query,
+        // each day in the same order as getEvents
+        public IntervalIndex.DayBuckets<CalendarEvent> getEventsByDay(LocalDate first, int days) {
+            IntervalIndex.DayBuckets<CalendarEvent> buckets = index.byDay(first, days);
+            buckets.sort(DAY_ORDER);
+            return buckets;
         }
         
+        // Events whose title or description has words starting with each word of the query
         public List<CalendarEvent> searchEvents(String query) {
             if (query == null || query.trim().isEmpty()) return getAllEvents();
-            String lowerQ = query.toLowerCase();
-            return events.stream()
-                .filter(e -> e.getTitle().toLowerCase().contains(lowerQ))
-                .sorted(Comparator.comparing(CalendarEvent::getPriority))
-                .collect(Collectors.toList());
+            List<CalendarEvent> result = text.search(query);
+            result.sort(Comparator.comparing(CalendarEvent::getPriority));
+            return result;
+        }
+
+        // Also finds fragments and misspelt words; closest matches first, then by priority and start
+        public List<CalendarEvent> searchEventsFuzzy(String query) {
+            if (query == null || query.trim().isEmpty()) return getAllEvents();
+            return text.searchFuzzy(query, DAY_ORDER);
+        }
+
+        // Events that an event from start to end would overlap, leaving out the one being edited
+        public List<CalendarEvent> getConflicts(LocalDateTime start, LocalDateTime end, CalendarEvent editing) {
+            ensureLoaded(YearMonth.from(start));
+            return index.conflicting(start, end, editing);
+        }
+
+        // Every pair of overlapping events within [from, to) of the loaded months
+        public List<IntervalIndex.Conflict<CalendarEvent>> getConflictsBetween(LocalDateTime from, LocalDateTime to) {
+            return index.conflicts(from, to);
+        }
+
+        // The first free stretches of at least the given length within [from, to) on the given
+        // days between dayStart and dayEnd; the event being rescheduled does not count as busy
+        public List<IntervalIndex.Span> findFreeSlots(LocalDateTime from, LocalDateTime to, Duration length,
+                Set<DayOfWeek> days, LocalTime dayStart, LocalTime dayEnd, CalendarEvent ignore, int limit) {
+            for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+                ensureLoaded(month);
+            }
+            return index.free(from, to, length, days, dayStart, dayEnd, ignore, limit);
+        }
+
+        // Where an event of the given length could go next: the first free slot in working hours
+        // over the next two weeks, starting on a quarter hour after the given time; null if none
+        public LocalDateTime suggestStart(LocalDateTime after, Duration length, CalendarEvent ignore) {
+            LocalDateTime from = after.truncatedTo(ChronoUnit.HOURS)
+                .plusMinutes((after.getMinute() + 14) / 15 * 15);
+            List<IntervalIndex.Span> slots = findFreeSlots(from, from.plusDays(SUGGEST_DAYS), length,
+                WORK_DAYS, WORK_START, WORK_END, ignore, 1);
+            return slots.isEmpty() ? null : slots.get(0).getStart();
+        }
+
+        // Events with one of the given priorities and one of the given reminder times (any if
+        // none are given), optionally only those overlapping [from, to), in the same order as
+        // getEvents
+        public List<CalendarEvent> filterEvents(Set<EventPriority> priorities, Set<ReminderTime> reminders,
+                LocalDateTime from, LocalDateTime to) {
+            BitmapIndex.Bitmap matching = attributes.matching(Arrays.asList(priorities, reminders));
+            List<CalendarEvent> result;
+            if (from != null && to != null) {
+                // Occurrences are not filed themselves; their series is
+                result = new ArrayList<>();
+                for (CalendarEvent e : index.overlapping(from, to)) {
+                    if (attributes.contains(matching, e.getSeries() != null ? e.getSeries() : e)) result.add(e);
+                }
+            } else {
+                result = attributes.items(matching);
+            }
+            result.sort(DAY_ORDER);
+            return result;
         }
 
+        // Read-only views kept in order as events change
         public List<CalendarEvent> getAllEvents() {
-            return events.stream()
-                .sorted(Comparator.comparing(CalendarEvent::getPriority).thenComparing(CalendarEvent::getStart))
-                .collect(Collectors.toList());
+            return byPriority.asList();
+        }
+
+        public List<CalendarEvent> getEventsByStart() {
+            return byStart.asList();
         }
 
-        private void update() { notifyListeners(); saveAsync(); }
+        // The reminders of every profile, following this one's events while it is loaded
+        public Reminders getReminders() {
+            return reminders;
+        }
+
+        private void update() { notifyListeners(); scheduleSave(); }
         public void addListener(Runnable r) { listeners.add(r); }
         private void notifyListeners() { listeners.forEach(Runnable::run); }
 
-        @SuppressWarnings("unchecked")
+        // Makes sure the given month and its neighbours are in memory
+        public void ensureLoaded(YearMonth month) {
+            if (segments == null) return;
+            List<YearMonth> missing = segments.unloaded(month.minusMonths(1), month.plusMonths(1));
+            for (YearMonth m : missing) ensureSegmentLoaded(m);
+            if (!missing.isEmpty()) SwingUtilities.invokeLater(this::notifyListeners);
+        }
+
+        // A month has to be loaded before events are filed under it, otherwise rewriting its
+        // segment would drop the events still on disk
+        private void file(CalendarEvent e) {
+            if (segments == null) return;
+            YearMonth month = YearMonth.from(e.getStart());
+            ensureSegmentLoaded(month);
+            segmentOf.put(e, month);
+            segments.markDirty(month);
+        }
+
+        private void unfile(CalendarEvent e) {
+            YearMonth month = segmentOf.remove(e);
+            if (month != null) segments.markDirty(month);
+        }
+
+        private void ensureSegmentLoaded(YearMonth month) {
+            if (segments.isLoaded(month)) return;
+            merge(month, readSegment(segments, month));
+        }
+
+        private void merge(YearMonth month, Map<CalendarEvent, String[]> segment) {
+            if (segments.isLoaded(month)) return;
+            segments.markLoaded(month);
+            segment.forEach((e, words) -> {
+                events.add(e);
+                track(e, words);
+                segmentOf.put(e, month);
+            });
+        }
+
+        // The events of a month with the words to index them under, so that loads on the
+        // background threads also do the tokenizing and description reads there
+        private static Map<CalendarEvent, String[]> readSegment(MonthSegments segments, YearMonth month) {
+            Map<CalendarEvent, String[]> segment = new LinkedHashMap<>();
+            File f = segments.segmentFile(month);
+            if (segments.hasSegment(month) && f.exists()) {
+                try {
+                    for (CalendarEvent e : StorageCodec.readEvents(f)) segment.put(e, words(e));
+                } catch (Exception e) { e.printStackTrace(); }
+            }
+            return segment;
+        }
+
+        // The previous profile's pending changes are written and its events let go of at once, so
+        // nothing changed during the load can be filed or saved under the wrong profile
         public void loadAsync() {
-            new SwingWorker<List<CalendarEvent>, Void>() {
+            saveTimer.stop();
+            writeSnapshot();
+            int load = ++loads;
+            if (queued == null) queued = new ArrayList<>();
+            events = new ArrayList<>();
+            segmentOf = new HashMap<>();
+            occurrences.clear();
+            index = newIndex();
+            text = new TextIndex<>();
+            byStart.clear();
+            byPriority.clear();
+            attributes.clear();
+            segments = null;
+            loadedProfile = null;
+            loadedReminders = null;
+            notifyListeners();
+            Profile active = profileManager.getActiveProfile();
+            YearMonth focus = YearMonth.now();
+            YearMonth lastRun = active != null ? YearMonth.from(reminders.of(active).getLastRun()) : focus;
+            new SwingWorker<Map<YearMonth, Map<CalendarEvent, String[]>>, Void>() {
+                MonthSegments loading;
+                boolean migrated;
+
                 @Override
-                protected List<CalendarEvent> doInBackground() {
-                    Profile active = profileManager.getActiveProfile();
-                    if (active == null) return new ArrayList<>();
+                protected Map<YearMonth, Map<CalendarEvent, String[]>> doInBackground() {
+                    Map<YearMonth, Map<CalendarEvent, String[]>> loaded = new TreeMap<>();
+                    if (active == null) return loaded;
+                    loading = new MonthSegments(new File(active.getSegmentDirectory()), ".dat");
+                    if (loading.exists()) {
+                        try {
+                            loading.readManifest();
+                        } catch (IOException e) { e.printStackTrace(); }
+                        loading.removeOrphanBlobs(StorageCodec::blobGeneration);
+                        // Months holding repeating events are needed wherever the calendar is, and
+                        // the months since the last run for the reminders that fell due meanwhile
+                        for (YearMonth month : loading.unloaded(focus.minusMonths(1), focus.plusMonths(1))) {
+                            loaded.put(month, readSegment(loading, month));
+                        }
+                        List<YearMonth> eager = new ArrayList<>(loading.unloadedRepeating());
+                        if (lastRun.isBefore(focus.minusMonths(1))) eager.addAll(loading.unloaded(lastRun, focus.minusMonths(2)));
+                        for (YearMonth month : eager) {
+                            if (!loaded.containsKey(month)) loaded.put(month, readSegment(loading, month));
+                        }
+                        return loaded;
+                    }
+                    // Profiles saved before segments existed keep everything in one file
                     File f = new File(active.getFileName());
                     if (f.exists()) {
-                        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(f))) {
-                            return (List<CalendarEvent>) ois.readObject();
+                        try {
+                            for (CalendarEvent e : StorageCodec.readEvents(f)) {
+                                loaded.computeIfAbsent(YearMonth.from(e.getStart()), k -> new LinkedHashMap<>()).put(e, words(e));
+                            }
+                            migrated = true;
                         } catch (Exception e) { e.printStackTrace(); }
                     }
-                    return new ArrayList<>();
+                    return loaded;
                 }
                 @Override
                 protected void done() {
-                    try { events = get(); notifyListeners(); } catch (Exception e) { e.printStackTrace(); }
+                    // A later load has taken over, along with the queued changes
+                    if (load != loads) return;
+                    try {
+                        Map<YearMonth, Map<CalendarEvent, String[]>> loaded = get();
+                        segments = loading;
+                        loadedProfile = active;
+                        loadedReminders = active != null ? reminders.of(active) : null;
+                        if (loadedReminders != null) loadedReminders.follow();
+                        if (segments != null) {
+                            loaded.forEach(EventManager.this::merge);
+                            if (migrated) {
+                                loaded.keySet().forEach(segments::markDirty);
+                                writeSnapshot();
+                            } else {
+                                preload(segments, focus.plusMonths(2));
+                            }
+                        }
+                    } catch (Exception e) { e.printStackTrace(); }
+                    List<Runnable> changes = queued;
+                    queued = null;
+                    changes.forEach(Runnable::run);
+                    notifyListeners();
                 }
             }.execute();
         }
 
-        private void saveAsync() {
+        // Reads the remaining later months on the persistence thread; the result is dropped
+        // if another profile has been loaded in the meantime
+        private void preload(MonthSegments target, YearMonth from) {
+            List<YearMonth> months = target.unloadedFrom(from);
+            if (months.isEmpty()) return;
+            persistence.execute(() -> {
+                Map<YearMonth, Map<CalendarEvent, String[]>> loaded = new TreeMap<>();
+                for (YearMonth month : months) loaded.put(month, readSegment(target, month));
+                SwingUtilities.invokeLater(() -> {
+                    if (segments != target) return;
+                    loaded.forEach(this::merge);
+                    notifyListeners();
+                });
+            });
+        }
+
+        private void scheduleSave() {
+            saveTimer.restart();
+        }
+
+        private void writeSnapshot() {
+            if (loadedProfile == null || segments == null) return;
+            Set<YearMonth> months = segments.takeDirty();
+            if (months.isEmpty()) return;
+            MonthSegments target = segments;
+            Map<YearMonth, List<CalendarEvent>> snapshot = new TreeMap<>();
+            for (YearMonth month : months) snapshot.put(month, new ArrayList<>());
+            for (CalendarEvent e : events) {
+                List<CalendarEvent> segment = snapshot.get(segmentOf.get(e));
+                // Copied, since the dialogs change events in place while the write runs
+                if (segment != null) segment.add(new CalendarEvent(e));
+            }
+            Map<YearMonth, Integer> counts = new HashMap<>();
+            Set<YearMonth> repeating = new HashSet<>();
+            snapshot.forEach((month, segment) -> {
+                counts.put(month, segment.size());
+                if (segment.stream().anyMatch(e -> e.getRecurrence() != null)) repeating.add(month);
+            });
+            String manifest = target.updateCounts(counts, repeating);
+            lastWrite = persistence.submit(() -> {
+                try {
+                    target.createDirectory();
+                    Map<File, Long> written = new HashMap<>();
+                    for (Map.Entry<YearMonth, List<CalendarEvent>> entry : snapshot.entrySet()) {
+                        File file = target.segmentFile(entry.getKey());
+                        if (entry.getValue().isEmpty()) {
+                            target.deleteSegment(entry.getKey());
+                            written.put(file, 0L);
+                        } else {
+                            written.put(file, StorageCodec.writeEvents(file, entry.getValue()));
+                        }
+                    }
+                    target.writeManifest(manifest);
+                    // Only now nothing on disk refers to the previous blob generations
+                    written.forEach(BlobStore::retain);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    SwingUtilities.invokeLater(() -> months.forEach(target::markDirty));
+                }
+            });
+        }
+
+        // Writes any pending changes now and waits until everything queued is on disk, including
+        // how far reminders have been handled
+        public void flush() {
+            saveTimer.stop();
+            writeSnapshot();
+            try {
+                lastWrite.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) { e.printStackTrace(); }
+            reminders.saveProgress();
+        }
+    }
+
+    // ==========================================
+    // REMINDERS
+    // ==========================================
+    // Reminders of every profile, not only the one on screen. Each profile has a ReminderBook
+    // with its pending reminders, a ledger of the ones already shown, kept in its segment
+    // directory, and an alarm armed with the profile's next due time only, so a change to an
+    // event re-files that one event and re-arms at most one alarm. The profile the
+    // EventManager has loaded follows its changes; the others are read once in the background,
+    // from the month of their last run on.
+    static class Reminders {
+        private static final String LEDGER_FILE = "reminders";
+
+        interface Deliver { void accept(Profile profile, List<ReminderQueue.Reminder<CalendarEvent>> due); }
+
+        private final ProfileManager profileManager;
+        private final Map<String, ProfileReminders> profiles = new HashMap<>();
+        private Deliver deliver;
+
+        public Reminders(ProfileManager profileManager) {
+            this.profileManager = profileManager;
+        }
+
+        // Starts checking every profile; due reminders are handed to deliver on the UI thread,
+        // each batch found due together at once
+        public void start(Deliver deliver) {
+            this.deliver = deliver;
             Profile active = profileManager.getActiveProfile();
-            if (active == null) return;
-            List<CalendarEvent> snapshot = new ArrayList<>(events);
-            new SwingWorker<Void, Void>() {
+            for (Profile profile : profileManager.getProfiles()) {
+                ProfileReminders reminders = of(profile);
+                reminders.arm();
+                if (profile != active) fill(reminders);
+            }
+            profileManager.addListener(this::profilesChanged);
+        }
+
+        // Records for every profile whose reminders are all known that they have been handled up
+        // to now; a profile still being read from disk keeps its last run
+        public void saveProgress() {
+            profiles.values().forEach(ProfileReminders::saveProgress);
+        }
+
+        // The reminders of a profile, its ledger read on first use
+        ProfileReminders of(Profile profile) {
+            return profiles.computeIfAbsent(profile.getId(), id -> new ProfileReminders(profile));
+        }
+
+        // New profiles start out empty, deleted ones stop
+        private void profilesChanged() {
+            Set<String> ids = new HashSet<>();
+            for (Profile profile : profileManager.getProfiles()) {
+                ids.add(profile.getId());
+                if (!profiles.containsKey(profile.getId())) of(profile).arm();
+            }
+            profiles.values().removeIf(reminders -> {
+                if (ids.contains(reminders.profile.getId())) return false;
+                reminders.close();
+                return true;
+            });
+        }
+
+        // Reads the events of a profile that is not loaded: the months from its last run on
+        // and the months holding repeating events
+        private void fill(ProfileReminders reminders) {
+            Profile profile = reminders.profile;
+            YearMonth from = YearMonth.from(reminders.getLastRun());
+            new SwingWorker<List<CalendarEvent>, Void>() {
                 @Override
-                protected Void doInBackground() {
-                    try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(active.getFileName()))) {
-                        oos.writeObject(snapshot);
-                    } catch (IOException e) { e.printStackTrace(); }
-                    return null;
+                protected List<CalendarEvent> doInBackground() throws IOException {
+                    List<CalendarEvent> events = new ArrayList<>();
+                    MonthSegments segments = new MonthSegments(new File(profile.getSegmentDirectory()), ".dat");
+                    if (!segments.exists()) {
+                        File f = new File(profile.getFileName());
+                        if (f.exists()) events.addAll(StorageCodec.readEvents(f));
+                        return events;
+                    }
+                    segments.readManifest();
+                    Set<YearMonth> months = new TreeSet<>(segments.unloadedFrom(from));
+                    months.addAll(segments.unloadedRepeating());
+                    for (YearMonth month : months) {
+                        File f = segments.segmentFile(month);
+                        if (segments.hasSegment(month) && f.exists()) events.addAll(StorageCodec.readEvents(f));
+                    }
+                    return events;
+                }
+                @Override
+                protected void done() {
+                    try {
+                        reminders.fill(get());
+                    } catch (Exception e) { e.printStackTrace(); }
                 }
             }.execute();
         }
+
+        // A profile's reminder book, filled from the EventManager while it has the profile loaded
+        // and otherwise from disk
+        class ProfileReminders {
+            final Profile profile;
+            private final ReminderBook<CalendarEvent> book;
+            private final LocalDateTime lastRun;
+            private boolean followed;
+            private boolean filled;
+            private boolean closed;
+
+            ProfileReminders(Profile profile) {
+                this.profile = profile;
+                book = new ReminderBook<>(new File(profile.getSegmentDirectory(), LEDGER_FILE), CalendarEvent::getId,
+                    CalendarEvent::getStart, e -> e.getReminder().lead, CalendarEvent::getRecurrence);
+                LocalDateTime previous = book.load();
+                lastRun = previous != null ? previous : LocalDateTime.now();
+            }
+
+            // Where reminders were last handled up to; those due since are caught up on
+            public LocalDateTime getLastRun() {
+                return lastRun;
+            }
+
+            // The EventManager has loaded the profile and files its events from here on
+            public synchronized void follow() {
+                followed = true;
+                book.clear();
+            }
+
+            public void add(CalendarEvent e) {
+                book.add(e);
+            }
+
+            public void remove(CalendarEvent e) {
+                book.remove(e);
+            }
+
+            // When the earliest pending reminder is due, or null if there is none
+            public LocalDateTime getNextDue() {
+                return book.getNextDue();
+            }
+
+            public List<ReminderQueue.Reminder<CalendarEvent>> takeDue(LocalDateTime now) {
+                return book.takeDue(now);
+            }
+
+            private synchronized void fill(List<CalendarEvent> events) {
+                if (followed || closed) return;
+                events.forEach(book::add);
+                filled = true;
+            }
+
+            private synchronized void saveProgress() {
+                if (followed || filled) book.saveProgress();
+            }
+
+            private void arm() {
+                Deliver to = deliver;
+                book.start(due -> SwingUtilities.invokeLater(() -> to.accept(profile, due)));
+            }
+
+            private synchronized void close() {
+                closed = true;
+                book.close();
+            }
+        }
     }
 
     // ==========================================
@@ -363,6 +1352,7 @@ public class ModernCalendarApp {
             profileCombo.addActionListener(e -> {
                 Profile selected = (Profile) profileCombo.getSelectedItem();
                 if (selected != null && !selected.equals(profileManager.getActiveProfile())) {
+                    eventManager.flush();
                     profileManager.switchProfile(selected);
                     eventManager.loadAsync();
                 }
@@ -410,6 +1400,7 @@ public class ModernCalendarApp {
                 "Confirm Delete", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
             if (result == JOptionPane.YES_OPTION) {
                 try {
+                    eventManager.flush();
                     profileManager.deleteProfile(active);
                     eventManager.loadAsync();
                 } catch (IllegalStateException ex) {
@@ -474,94 +1465,207 @@ public class ModernCalendarApp {
         }
     }
 
-    static class CalendarCell extends JPanel {
-        private LocalDate date;
-        private boolean isToday, isSelected, isCurrentMonth;
-        private List<CalendarEvent> events = new ArrayList<>();
+    // The 6x7 month grid as one component that paints every day itself and finds the clicked day
+    // from the coordinates. Days are rebound as the month or the events change and only the ones
+    // that look different are repainted. Truncated titles are cached per title for the current
+    // cell width (a resize starts the cache over), and tints, strokes and labels are made once.
+    static class MonthGrid extends JComponent {
+        private static final int DAYS = 42;
+        private static final int SHOWN_EVENTS = 3;
+        private static final int TITLE_CACHE_SIZE = 1024;
+        private static final Color TODAY_BG = new Color(248, 250, 252);
+        private static final BasicStroke SELECTION_STROKE = new BasicStroke(2);
+        private static final BasicStroke PLAIN_STROKE = new BasicStroke();
+        private static final String[] DAY_NUMBERS = new String[32];
+        private static final Map<EventPriority, Color> TINTS = new EnumMap<>(EventPriority.class);
+        private static final Map<EventPriority, Color> TEXT_COLORS = new EnumMap<>(EventPriority.class);
+        static {
+            for (int i = 0; i < DAY_NUMBERS.length; i++) DAY_NUMBERS[i] = String.valueOf(i);
+            for (EventPriority p : EventPriority.values()) {
+                TINTS.put(p, new Color(p.color.getRed(), p.color.getGreen(), p.color.getBlue(), 30));
+                TEXT_COLORS.put(p, p.color.darker());
+            }
+        }
 
-        public CalendarCell(LocalDate date, boolean isCurrentMonth, boolean isToday) {
-            this.date = date;
-            this.isCurrentMonth = isCurrentMonth;
-            this.isToday = isToday;
+        private final LocalDate[] dates = new LocalDate[DAYS];
+        private final boolean[] currentMonth = new boolean[DAYS];
+        private final boolean[] today = new boolean[DAYS];
+        private final List<List<CalendarEvent>> events = new ArrayList<>(DAYS);
+        // What each day's event lines showed when last bound; events are changed in place
+        private final String[][] shownTitles = new String[DAYS][SHOWN_EVENTS];
+        private final EventPriority[][] shownPriorities = new EventPriority[DAYS][SHOWN_EVENTS];
+        private final List<String> moreLabels = new ArrayList<>();
+        private final Map<String, String> truncated = new LinkedHashMap<String, String>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > TITLE_CACHE_SIZE;
+            }
+        };
+        private int truncatedWidth = -1;
+        private FontMetrics smallMetrics;
+        private int selected = -1;
+
+        public MonthGrid(Consumer<LocalDate> dateCallback) {
+            for (int i = 0; i < DAYS; i++) events.add(Collections.emptyList());
+            setOpaque(true);
             setBackground(Color.WHITE);
-            setLayout(null);
+            setPreferredSize(new Dimension(700, 480));
+            addMouseListener(new MouseAdapter() {
+                public void mousePressed(MouseEvent e) {
+                    int day = dayAt(e.getX(), e.getY());
+                    if (day < 0 || dates[day] == null) return;
+                    select(day);
+                    dateCallback.accept(dates[day]);
+                }
+            });
+        }
+
+        public void bind(int day, LocalDate date, boolean isCurrentMonth, boolean isToday, List<CalendarEvent> dayEvents) {
+            boolean changed = !date.equals(dates[day]) || isCurrentMonth != currentMonth[day]
+                || isToday != today[day] || dayEvents.size() != events.get(day).size();
+            String[] titles = shownTitles[day];
+            EventPriority[] priorities = shownPriorities[day];
+            for (int i = 0; i < Math.min(SHOWN_EVENTS, dayEvents.size()); i++) {
+                CalendarEvent evt = dayEvents.get(i);
+                if (!Objects.equals(evt.getTitle(), titles[i]) || evt.getPriority() != priorities[i]) {
+                    titles[i] = evt.getTitle();
+                    priorities[i] = evt.getPriority();
+                    changed = true;
+                }
+            }
+            dates[day] = date;
+            currentMonth[day] = isCurrentMonth;
+            today[day] = isToday;
+            events.set(day, dayEvents);
+            if (changed) repaintDay(day);
+        }
+
+        public void clearSelection() {
+            select(-1);
+        }
+
+        private void select(int day) {
+            if (day == selected) return;
+            if (selected >= 0) repaintDay(selected);
+            selected = day;
+            if (selected >= 0) repaintDay(selected);
+        }
+
+        private void repaintDay(int day) {
+            repaint(left(day % 7), top(day / 7), left(day % 7 + 1) - left(day % 7), top(day / 7 + 1) - top(day / 7));
+        }
+
+        // Column and row edges, spread so that the cells fill the component exactly
+        private int left(int column) { return column * getWidth() / 7; }
+        private int top(int row) { return row * getHeight() / 6; }
+
+        private int dayAt(int x, int y) {
+            if (x < 0 || y < 0 || x >= getWidth() || y >= getHeight()) return -1;
+            return (y * 6 / getHeight()) * 7 + x * 7 / getWidth();
         }
-        public void setEvents(List<CalendarEvent> events) { this.events = events; repaint(); }
-        public void setSelected(boolean b) { this.isSelected = b; repaint(); }
 
         @Override
         protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
             Graphics2D g2 = (Graphics2D) g.create();
             Theme.applyAntialiasing(g2);
-            int w = getWidth(), h = getHeight();
+            Rectangle clip = g2.getClipBounds();
+            if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+            g2.setColor(getBackground());
+            g2.fillRect(clip.x, clip.y, clip.width, clip.height);
+            if (smallMetrics == null) smallMetrics = g2.getFontMetrics(Theme.FONT_SMALL);
+            for (int day = 0; day < DAYS; day++) {
+                int x = left(day % 7), y = top(day / 7);
+                int w = left(day % 7 + 1) - x, h = top(day / 7 + 1) - y;
+                if (dates[day] == null || !clip.intersects(x, y, w, h)) continue;
+                g2.translate(x, y);
+                paintDay(g2, day, w, h);
+                g2.translate(-x, -y);
+            }
+            g2.dispose();
+        }
 
-            if (isSelected) {
+        private void paintDay(Graphics2D g2, int day, int w, int h) {
+            if (day == selected) {
                 g2.setColor(Theme.SELECTION);
                 g2.fillRect(0, 0, w, h);
                 g2.setColor(Theme.ACCENT);
-                g2.setStroke(new BasicStroke(2));
-                g2.drawRect(1,1,w-2,h-2);
-            } else if (isToday) {
-                g2.setColor(new Color(248, 250, 252));
+                g2.setStroke(SELECTION_STROKE);
+                g2.drawRect(1, 1, w - 2, h - 2);
+                g2.setStroke(PLAIN_STROKE);
+            } else if (today[day]) {
+                g2.setColor(TODAY_BG);
                 g2.fillRect(0, 0, w, h);
             }
 
             // Draw date number
             g2.setFont(Theme.FONT_BOLD);
-            g2.setColor(isToday ? Theme.ACCENT : (isCurrentMonth ? Theme.TEXT_PRIMARY : Theme.TEXT_SECONDARY));
-            g2.drawString(String.valueOf(date.getDayOfMonth()), 8, 20);
+            g2.setColor(today[day] ? Theme.ACCENT : (currentMonth[day] ? Theme.TEXT_PRIMARY : Theme.TEXT_SECONDARY));
+            g2.drawString(DAY_NUMBERS[dates[day].getDayOfMonth()], 8, 20);
 
             // Draw event titles
-            if (!events.isEmpty()) {
+            List<CalendarEvent> dayEvents = events.get(day);
+            if (!dayEvents.isEmpty()) {
                 g2.setFont(Theme.FONT_SMALL);
                 int yOffset = 30;
-                int maxEvents = Math.min(3, events.size());
-                
+                int maxEvents = Math.min(SHOWN_EVENTS, dayEvents.size());
+
                 for (int i = 0; i < maxEvents; i++) {
-                    CalendarEvent evt = events.get(i);
-                    g2.setColor(evt.getPriority().color);
-                    
-                    String title = evt.getTitle();
-                    FontMetrics fm = g2.getFontMetrics();
-                    if (fm.stringWidth(title) > w - 10) {
-                        while (fm.stringWidth(title + "...") > w - 10 && title.length() > 0) {
-                            title = title.substring(0, title.length() - 1);
-                        }
-                        title = title + "...";
-                    }
-                    
-                    int textWidth = fm.stringWidth(title);
-                    g2.setColor(new Color(evt.getPriority().color.getRed(), 
-                                         evt.getPriority().color.getGreen(), 
-                                         evt.getPriority().color.getBlue(), 30));
+                    CalendarEvent evt = dayEvents.get(i);
+                    String title = truncate(evt.getTitle(), w - 10);
+                    int textWidth = smallMetrics.stringWidth(title);
+                    g2.setColor(TINTS.get(evt.getPriority()));
                     g2.fillRoundRect(5, yOffset - 10, Math.min(textWidth + 6, w - 10), 14, 4, 4);
-                    
-                    g2.setColor(evt.getPriority().color.darker());
+
+                    g2.setColor(TEXT_COLORS.get(evt.getPriority()));
                     g2.drawString(title, 7, yOffset);
                     yOffset += 16;
                 }
-                
-                if (events.size() > maxEvents) {
+
+                if (dayEvents.size() > maxEvents) {
                     g2.setColor(Theme.TEXT_SECONDARY);
-                    g2.drawString("+" + (events.size() - maxEvents) + " more", 7, yOffset);
+                    g2.drawString(moreLabel(dayEvents.size() - maxEvents), 7, yOffset);
                 }
             }
-            
+
             g2.setColor(Theme.BORDER);
-            g2.drawRect(0, 0, w-1, h-1);
-            g2.dispose();
+            g2.drawRect(0, 0, w - 1, h - 1);
+        }
+
+        // The longest start of the title that fits with "..." behind it, found by bisection
+        private String truncate(String title, int width) {
+            if (width != truncatedWidth) {
+                truncated.clear();
+                truncatedWidth = width;
+            }
+            String cached = truncated.get(title);
+            if (cached != null) return cached;
+            String result = title;
+            if (smallMetrics.stringWidth(title) > width) {
+                int ellipsis = smallMetrics.stringWidth("...");
+                int low = 0, high = title.length() - 1;
+                while (low < high) {
+                    int mid = (low + high + 1) >>> 1;
+                    if (smallMetrics.stringWidth(title.substring(0, mid)) + ellipsis <= width) low = mid; else high = mid - 1;
+                }
+                result = title.substring(0, low) + "...";
+            }
+            truncated.put(title, result);
+            return result;
+        }
+
+        private String moreLabel(int count) {
+            while (moreLabels.size() <= count) moreLabels.add("+" + moreLabels.size() + " more");
+            return moreLabels.get(count);
         }
     }
 
     static class CalendarPanel extends JPanel {
+        private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("MMMM yyyy");
         private LocalDate currentMonth;
         private EventManager manager;
         private Consumer<LocalDate> dateCallback;
-        private List<CalendarCell> cells = new ArrayList<>();
-        private CalendarCell selectedCell = null;
+        private MonthGrid grid;
         private JLabel monthLabel;
-        private JPanel gridContainer;
 
         public CalendarPanel(EventManager manager, Consumer<LocalDate> dateCallback) {
             this.manager = manager;
@@ -572,10 +1676,7 @@ public class ModernCalendarApp {
             setBackground(Color.WHITE);
             
             initHeader();
-            
-            gridContainer = new JPanel(new BorderLayout());
-            gridContainer.setBackground(Color.WHITE);
-            add(gridContainer, BorderLayout.CENTER);
+            initGrid();
             
             refresh();
         }
@@ -617,17 +1718,10 @@ public class ModernCalendarApp {
             add(header, BorderLayout.NORTH);
         }
         
-        public void setDate(LocalDate date) {
-            this.currentMonth = date.withDayOfMonth(1);
-            refresh();
-        }
-
-        public void refresh() {
-            monthLabel.setText(currentMonth.format(DateTimeFormatter.ofPattern("MMMM yyyy")));
-
-            gridContainer.removeAll();
-            cells.clear();
-            selectedCell = null;
+        // The day names and the grid are laid out once; refresh() only rebinds the days
+        private void initGrid() {
+            JPanel gridContainer = new JPanel(new BorderLayout());
+            gridContainer.setBackground(Color.WHITE);
 
             JPanel dayNames = new JPanel(new GridLayout(1, 7));
             dayNames.setBackground(Color.WHITE);
@@ -641,40 +1735,34 @@ public class ModernCalendarApp {
             }
             gridContainer.add(dayNames, BorderLayout.NORTH);
 
-            JPanel grid = new JPanel(new GridLayout(0, 7)); 
+            grid = new MonthGrid(dateCallback);
+            gridContainer.add(grid, BorderLayout.CENTER);
+            add(gridContainer, BorderLayout.CENTER);
+        }
+        
+        public void setDate(LocalDate date) {
+            this.currentMonth = date.withDayOfMonth(1);
+            refresh();
+        }
+
+        public void refresh() {
+            manager.ensureLoaded(YearMonth.from(currentMonth));
+            monthLabel.setText(currentMonth.format(MONTH_FORMAT));
+
+            grid.clearSelection();
+
             LocalDate firstDay = currentMonth.withDayOfMonth(1);
             int startDayOfWeek = firstDay.getDayOfWeek().getValue() - 1; 
             LocalDate displayDate = firstDay.minusDays(startDayOfWeek);
+            IntervalIndex.DayBuckets<CalendarEvent> buckets = manager.getEventsByDay(displayDate, 42);
+            LocalDate today = LocalDate.now();
 
-            for(int i=0; i<42; i++) {
+            for (int i = 0; i < 42; i++) {
                 boolean isCurrent = displayDate.getMonth() == currentMonth.getMonth() && 
                                    displayDate.getYear() == currentMonth.getYear();
-                boolean isToday = displayDate.equals(LocalDate.now());
-                
-                CalendarCell cell = new CalendarCell(displayDate, isCurrent, isToday);
-                cell.setEvents(manager.getEvents(displayDate));
-                cell.setPreferredSize(new Dimension(100, 80));
-                
-                final LocalDate d = displayDate;
-                final CalendarCell c = cell;
-                
-                cell.addMouseListener(new MouseAdapter() {
-                    public void mousePressed(MouseEvent e) {
-                        if(selectedCell != null) selectedCell.setSelected(false);
-                        selectedCell = c;
-                        selectedCell.setSelected(true);
-                        dateCallback.accept(d);
-                    }
-                });
-
-                cells.add(cell);
-                grid.add(cell);
+                grid.bind(i, displayDate, isCurrent, displayDate.equals(today), buckets.get(displayDate));
                 displayDate = displayDate.plusDays(1);
             }
-            
-            gridContainer.add(grid, BorderLayout.CENTER);
-            gridContainer.revalidate();
-            gridContainer.repaint();
         }
 
         public LocalDate getCurrentSelection() { return currentMonth; }
@@ -682,10 +1770,11 @@ public class ModernCalendarApp {
 
     static class Sidebar extends JPanel {
         private EventManager manager;
-        private DefaultListModel<CalendarEvent> listModel;
+        private EventListModel<CalendarEvent> listModel;
         private JList<CalendarEvent> eventList;
         private LocalDate selectedDate;
         private CalendarPanel linkedCalendar;
+        private boolean fuzzy;
 
         public Sidebar(EventManager manager) {
             this.manager = manager;
@@ -706,9 +1795,12 @@ public class ModernCalendarApp {
             topPanel.add(searchField, BorderLayout.CENTER);
             add(topPanel, BorderLayout.NORTH);
 
-            listModel = new DefaultListModel<>();
+            listModel = new EventListModel<>();
             eventList = new JList<>(listModel);
             eventList.setCellRenderer(new EventRenderer());
+            // Every row is the same size, so it is measured once on this sample instead of per event
+            LocalDateTime sample = LocalDate.now().atTime(9, 0);
+            eventList.setPrototypeCellValue(new CalendarEvent("Sample", sample, sample.plusHours(1), EventPriority.MEDIUM, ""));
             eventList.setBackground(Theme.BG_APP);
             eventList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
             
@@ -753,7 +1845,20 @@ public class ModernCalendarApp {
             showAllBtn.setForeground(Theme.ACCENT);
             showAllBtn.setCursor(new Cursor(Cursor.HAND_CURSOR));
             showAllBtn.addActionListener(e -> { selectedDate = null; searchField.setText(""); filterList(""); });
-            topPanel.add(showAllBtn, BorderLayout.SOUTH);
+
+            JCheckBox fuzzyBox = new JCheckBox("Fuzzy");
+            fuzzyBox.setToolTipText("Also match fragments and typos, closest first");
+            fuzzyBox.setFont(Theme.FONT_SMALL);
+            fuzzyBox.setForeground(Theme.TEXT_SECONDARY);
+            fuzzyBox.setOpaque(false);
+            fuzzyBox.setFocusPainted(false);
+            fuzzyBox.addActionListener(e -> { fuzzy = fuzzyBox.isSelected(); filterList(searchField.getText()); });
+
+            JPanel searchOptions = new JPanel(new BorderLayout());
+            searchOptions.setOpaque(false);
+            searchOptions.add(showAllBtn, BorderLayout.WEST);
+            searchOptions.add(fuzzyBox, BorderLayout.EAST);
+            topPanel.add(searchOptions, BorderLayout.SOUTH);
         }
         
         public void setLinkedCalendar(CalendarPanel cp) { this.linkedCalendar = cp; }
@@ -764,12 +1869,10 @@ public class ModernCalendarApp {
         }
 
         private void filterList(String query) {
-            listModel.clear();
-            List<CalendarEvent> data;
-            if (!query.isEmpty()) data = manager.searchEvents(query);
-            else if (selectedDate != null) data = manager.getEvents(selectedDate);
-            else data = manager.getAllEvents();
-            data.forEach(listModel::addElement);
+            eventList.clearSelection();
+            if (!query.isEmpty()) listModel.setItems(fuzzy ? manager.searchEventsFuzzy(query) : manager.searchEvents(query));
+            else if (selectedDate != null) listModel.setItems(manager.getEvents(selectedDate));
+            else listModel.setItems(manager.getAllEvents());
         }
 
         private void addEvent() {
@@ -778,16 +1881,33 @@ public class ModernCalendarApp {
             new ModernEventDialog(SwingUtilities.getWindowAncestor(this), manager, baseDate, null).setVisible(true);
         }
         
+        // An occurrence of a repeating event is edited on its own, which takes it out of the
+        // series, or as the whole series, or its date is skipped
         private void editEvent(CalendarEvent sel) {
+            if (sel != null && sel.getSeries() != null) {
+                int choice = askOccurrence(sel, "Edit", "This Occurrence", "Whole Series", "Skip This Date", "Cancel");
+                if (choice == 2) manager.skipOccurrence(sel);
+                if (choice != 0 && choice != 1) return;
+                sel = choice == 0 ? manager.detachOccurrence(sel) : sel.getSeries();
+            }
             if (sel != null) new ModernEventDialog(SwingUtilities.getWindowAncestor(this), manager, sel.getStart().toLocalDate(), sel).setVisible(true);
         }
         
         private void deleteEvent() {
             CalendarEvent sel = eventList.getSelectedValue();
-            if (sel != null && JOptionPane.showConfirmDialog(this, "Delete event?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+            if (sel != null && sel.getSeries() != null) {
+                int choice = askOccurrence(sel, "Delete", "This Occurrence", "Whole Series", "Cancel");
+                if (choice == 0) manager.skipOccurrence(sel);
+                else if (choice == 1) manager.removeEvent(sel.getSeries());
+            } else if (sel != null && JOptionPane.showConfirmDialog(this, "Delete event?", "Confirm", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
                 manager.removeEvent(sel);
             }
         }
+
+        private int askOccurrence(CalendarEvent occurrence, String action, Object... options) {
+            return JOptionPane.showOptionDialog(this, "\"" + occurrence.getTitle() + "\" repeats. " + action + " which events?",
+                action + " Repeating Event", JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        }
     }
 
     static class EventRenderer extends JPanel implements ListCellRenderer<CalendarEvent> {
@@ -817,7 +1937,9 @@ public class ModernCalendarApp {
         @Override
         public Component getListCellRendererComponent(JList<? extends CalendarEvent> list, CalendarEvent value, int index, boolean isSelected, boolean cellHasFocus) {
             title.setText(value.getTitle());
-            meta.setText(value.getStart().format(DateTimeFormatter.ofPattern("MMM d, yyyy • HH:mm")) + " • " + value.getPriority().label);
+            RecurrenceRule rule = value.getSeries() != null ? value.getSeries().getRecurrence() : value.getRecurrence();
+            meta.setText(value.getStart().format(DateTimeFormatter.ofPattern("MMM d, yyyy • HH:mm")) + " • " + value.getPriority().label
+                + (rule != null ? " • " + rule : ""));
             statusColor.setBackground(value.getPriority().color);
             setBackground(isSelected ? Theme.SELECTION : Color.WHITE);
             return this;
@@ -827,7 +1949,7 @@ public class ModernCalendarApp {
     static class ModernEventDialog extends JDialog {
         public ModernEventDialog(Window owner, EventManager manager, LocalDate date, CalendarEvent editing) {
             super(owner, editing == null ? "New Event" : "Edit Event", ModalityType.APPLICATION_MODAL);
-            setSize(450, 580);
+            setSize(450, 770);
             setLocationRelativeTo(owner);
             
             JPanel p = new JPanel();
@@ -879,10 +2001,53 @@ public class ModernCalendarApp {
             
             row2.add(p1); row2.add(p2);
             p.add(row2);
+
+            // Double-booking warning, kept current while the date and time are edited
+            JLabel conflictLabel = new JLabel(" ");
+            conflictLabel.setFont(Theme.FONT_SMALL);
+            conflictLabel.setForeground(Theme.PRIORITY_HIGH);
+            conflictLabel.setBorder(new EmptyBorder(5, 0, 0, 0));
+            conflictLabel.setAlignmentX(Component.LEFT_ALIGNMENT);
+            p.add(conflictLabel);
+            Runnable checkConflicts = () -> conflictLabel.setText(
+                conflictWarning(manager, dateField.getText(), (Date) timeSpin.getValue(), editing));
+            dateField.getDocument().addDocumentListener(new SimpleDocListener(e -> checkConflicts.run()));
+            timeSpin.addChangeListener(e -> checkConflicts.run());
+            checkConflicts.run();
             p.add(Box.createVerticalStrut(15));
             
             addLabel(p, "Priority"); p.add(wrap(priCombo));
             p.add(Box.createVerticalStrut(15));
+
+            JComboBox<ReminderTime> reminderCombo = new JComboBox<>(ReminderTime.values());
+            reminderCombo.setBackground(Color.WHITE);
+            if (editing != null) reminderCombo.setSelectedItem(editing.getReminder());
+            addLabel(p, "Reminder"); p.add(wrap(reminderCombo));
+            p.add(Box.createVerticalStrut(15));
+
+            // Skipped dates stay with the series when it is edited
+            RecurrenceRule rule = editing != null ? editing.getRecurrence() : null;
+            JComboBox<String> repeatCombo = new JComboBox<>(new String[] {"Never", "Daily", "Weekly", "Monthly"});
+            repeatCombo.setBackground(Color.WHITE);
+            if (rule != null) repeatCombo.setSelectedIndex(rule.getFrequency().ordinal() + 1);
+            ModernTextField intervalField = new ModernTextField(rule != null ? String.valueOf(rule.getInterval()) : "1");
+            ModernTextField untilField = new ModernTextField(rule != null && rule.getUntil() != null ? rule.getUntil().toString() : "");
+            ModernTextField countField = new ModernTextField(rule != null && rule.getCount() > 0 ? String.valueOf(rule.getCount()) : "");
+
+            JPanel repeatRow = new JPanel(new GridLayout(1, 4, 10, 0));
+            repeatRow.setBackground(Color.WHITE);
+            repeatRow.setAlignmentX(Component.LEFT_ALIGNMENT);
+            repeatRow.setMaximumSize(new Dimension(Short.MAX_VALUE, 60));
+            String[] repeatLabels = {"Repeat", "Every", "Until", "Times"};
+            JComponent[] repeatFields = {repeatCombo, intervalField, untilField, countField};
+            for (int i = 0; i < repeatFields.length; i++) {
+                JPanel cell = new JPanel(new BorderLayout()); cell.setBackground(Color.WHITE);
+                cell.add(createLabel(repeatLabels[i]), BorderLayout.NORTH);
+                cell.add(repeatFields[i], BorderLayout.CENTER);
+                repeatRow.add(cell);
+            }
+            p.add(repeatRow);
+            p.add(Box.createVerticalStrut(15));
             
             addLabel(p, "Description"); p.add(descScroll);
             p.add(Box.createVerticalStrut(25));
@@ -891,6 +2056,26 @@ public class ModernCalendarApp {
             btnPanel.setBackground(Color.WHITE);
             btnPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
             
+            StyledButton suggest = new StyledButton("Suggest Time", Theme.BG_APP, Theme.ACCENT);
+            suggest.addActionListener(e -> {
+                LocalDateTime from;
+                try {
+                    LocalTime tm = ((Date) timeSpin.getValue()).toInstant().atZone(ZoneId.systemDefault()).toLocalTime();
+                    from = LocalDateTime.of(LocalDate.parse(dateField.getText().trim()), tm);
+                } catch (DateTimeException ex) {
+                    JOptionPane.showMessageDialog(this, "Enter a valid date first.");
+                    return;
+                }
+                LocalDateTime now = LocalDateTime.now();
+                LocalDateTime start = manager.suggestStart(from.isBefore(now) ? now : from, duration(editing), editing);
+                if (start == null) {
+                    JOptionPane.showMessageDialog(this, "No free time during working hours in the next two weeks.");
+                    return;
+                }
+                dateField.setText(start.toLocalDate().toString());
+                timeSpin.setValue(java.sql.Timestamp.valueOf(start));
+            });
+
             StyledButton cancel = new StyledButton("Cancel", Theme.BG_APP, Theme.TEXT_PRIMARY);
             cancel.addActionListener(e -> dispose());
             
@@ -902,23 +2087,59 @@ public class ModernCalendarApp {
                     LocalDate d = LocalDate.parse(dateField.getText());
                     LocalTime tm = ((Date)timeSpin.getValue()).toInstant().atZone(ZoneId.systemDefault()).toLocalTime();
                     LocalDateTime dt = LocalDateTime.of(d, tm);
+                    RecurrenceRule recurrence = null;
+                    if (repeatCombo.getSelectedIndex() > 0) {
+                        String until = untilField.getText().trim();
+                        String count = countField.getText().trim();
+                        recurrence = new RecurrenceRule(RecurrenceRule.Frequency.values()[repeatCombo.getSelectedIndex() - 1],
+                            Integer.parseInt(intervalField.getText().trim()), count.isEmpty() ? 0 : Integer.parseInt(count),
+                            until.isEmpty() ? null : LocalDate.parse(until), rule != null ? rule.getExceptions() : new ArrayList<>());
+                    }
                     
-                    if (editing == null) manager.addEvent(new CalendarEvent(t, dt, dt.plusHours(1), (EventPriority)priCombo.getSelectedItem(), desc.getText()));
-                    else {
-                        editing.setTitle(t); editing.setStart(dt);
+                    if (editing == null) {
+                        CalendarEvent created = new CalendarEvent(t, dt, dt.plusHours(1), (EventPriority)priCombo.getSelectedItem(), desc.getText());
+                        created.setRecurrence(recurrence);
+                        created.setReminder((ReminderTime) reminderCombo.getSelectedItem());
+                        manager.addEvent(created);
+                    } else {
+                        editing.setTitle(t); editing.setEnd(dt.plus(duration(editing))); editing.setStart(dt);
                         editing.setPriority((EventPriority)priCombo.getSelectedItem()); 
                         editing.setDescription(desc.getText());
+                        editing.setRecurrence(recurrence);
+                        editing.setReminder((ReminderTime) reminderCombo.getSelectedItem());
                         manager.updateEvent(editing, editing);
                     }
                     dispose();
                 } catch(Exception ex) { JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage()); }
             });
+            btnPanel.add(suggest);
             btnPanel.add(cancel);
             btnPanel.add(save);
             p.add(btnPanel);
             add(p);
         }
         
+        // Moving an event keeps its length; new events last an hour
+        private static Duration duration(CalendarEvent editing) {
+            return editing == null ? Duration.ofHours(1) : Duration.between(editing.getStart(), editing.getEnd());
+        }
+
+        // Names the events the entered time would overlap; blank while the date does not parse
+        private static String conflictWarning(EventManager manager, String date, Date time, CalendarEvent editing) {
+            List<CalendarEvent> conflicts;
+            try {
+                LocalTime tm = time.toInstant().atZone(ZoneId.systemDefault()).toLocalTime();
+                LocalDateTime start = LocalDateTime.of(LocalDate.parse(date.trim()), tm);
+                conflicts = manager.getConflicts(start, start.plus(duration(editing)), editing);
+            } catch (DateTimeException e) {
+                return " ";
+            }
+            if (conflicts.isEmpty()) return " ";
+            CalendarEvent first = conflicts.get(0);
+            String warning = "Overlaps " + first.getTitle() + " at " + first.getStart().format(DateTimeFormatter.ofPattern("HH:mm"));
+            return conflicts.size() > 1 ? warning + " and " + (conflicts.size() - 1) + " more" : warning;
+        }
+
         private void addLabel(JPanel p, String t) {
             JLabel l = new JLabel(t);
             l.setFont(Theme.FONT_BOLD);
@@ -941,6 +2162,68 @@ public class ModernCalendarApp {
         }
     }
 
+    // Collects the reminders of every profile in one window that stays open beside the calendar,
+    // without blocking it, until dismissed
+    static class ReminderPopup extends JDialog {
+        private final DefaultListModel<String> model = new DefaultListModel<>();
+
+        public ReminderPopup(Window owner) {
+            super(owner, "Reminder", ModalityType.MODELESS);
+            setSize(460, 280);
+            setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+
+            JPanel p = new JPanel(new BorderLayout(0, 15));
+            p.setBorder(new EmptyBorder(20, 20, 20, 20));
+            p.setBackground(Color.WHITE);
+
+            JLabel header = new JLabel("Upcoming Events");
+            header.setFont(Theme.FONT_TITLE);
+
+            JList<String> list = new JList<>(model);
+            list.setFont(Theme.FONT_REGULAR);
+            list.setBorder(new EmptyBorder(5, 5, 5, 5));
+            JScrollPane scroll = new JScrollPane(list);
+            scroll.setBorder(new LineBorder(Theme.BORDER));
+
+            JPanel btnPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+            btnPanel.setBackground(Color.WHITE);
+            StyledButton dismiss = new StyledButton("Dismiss", Theme.ACCENT, Color.WHITE);
+            dismiss.addActionListener(e -> dismiss());
+            btnPanel.add(dismiss);
+
+            p.add(header, BorderLayout.NORTH);
+            p.add(scroll, BorderLayout.CENTER);
+            p.add(btnPanel, BorderLayout.SOUTH);
+            add(p);
+            addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) { dismiss(); }
+            });
+        }
+
+        // Adds a batch of reminders that fell due together, with one beep
+        public void remind(Profile profile, List<ReminderQueue.Reminder<CalendarEvent>> due) {
+            LocalDateTime now = LocalDateTime.now();
+            for (ReminderQueue.Reminder<CalendarEvent> reminder : due) {
+                model.addElement((reminder.getStart().isAfter(now) ? "" : "Missed: ") + reminder.getItem().getTitle()
+                    + " • " + reminder.getStart().format(DateTimeFormatter.ofPattern("MMM d, HH:mm")) + " • " + profile.getName());
+            }
+            setTitle(model.size() == 1 ? "Reminder" : model.size() + " Reminders");
+            Toolkit.getDefaultToolkit().beep();
+            if (isVisible()) {
+                toFront();
+            } else {
+                setLocationRelativeTo(getOwner());
+                setVisible(true);
+            }
+        }
+
+        private void dismiss() {
+            model.clear();
+            setVisible(false);
+        }
+    }
+
     static class SimpleDocListener implements DocumentListener {
         private final Consumer<DocumentEvent> c;
         public SimpleDocListener(Consumer<DocumentEvent> c) { this.c = c; }
@@ -960,6 +2243,10 @@ public class ModernCalendarApp {
             
             ProfileManager profileManager = new ProfileManager();
             EventManager eventManager = new EventManager(profileManager);
+            frame.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosing(WindowEvent e) { eventManager.flush(); }
+            });
             
             Sidebar sidebar = new Sidebar(eventManager);
             CalendarPanel calendar = new CalendarPanel(eventManager, date -> sidebar.filterByDate(date));
@@ -986,6 +2273,8 @@ public class ModernCalendarApp {
             frame.add(sidebar, BorderLayout.EAST);
             
             frame.setVisible(true);
+            ReminderPopup reminderPopup = new ReminderPopup(frame);
+            eventManager.getReminders().start(reminderPopup::remind);
             eventManager.loadAsync();
         });
     }
@@ -0,0 +1,194 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Bookkeeping for event storage split into one segment file per calendar month. The manifest
+// lists the months that have a segment and how many events each holds, marking the months
+// that hold repeating events, which reach beyond their month and so are read at startup.
+// Callers decide which months to read; a month must be loaded before events are filed under
+// it, and only months marked dirty are rewritten. State is owned by the UI thread; the file
+// methods are not.
+class MonthSegments {
+    private static final String MANIFEST = "manifest";
+    private static final String HEADER = "J-Scheduler segments 1";
+    private static final String REPEATING = "repeating";
+
+    private final File directory;
+    private final String extension;
+    private final TreeMap<YearMonth, Integer> counts = new TreeMap<>();
+    private final Set<YearMonth> repeating = new TreeSet<>();
+    private final Set<YearMonth> loaded = new HashSet<>();
+    private final Set<YearMonth> dirty = new HashSet<>();
+
+    public MonthSegments(File directory, String extension) {
+        this.directory = directory;
+        this.extension = extension;
+    }
+
+    public boolean exists() {
+        return new File(directory, MANIFEST).exists();
+    }
+
+    public void readManifest() throws IOException {
+        counts.clear();
+        repeating.clear();
+        List<String> lines = Files.readAllLines(new File(directory, MANIFEST).toPath(), StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals(HEADER)) {
+            throw new IOException("unknown manifest format in " + directory);
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isEmpty()) continue;
+            String[] parts = line.split(" ");
+            try {
+                YearMonth month = YearMonth.parse(parts[0]);
+                counts.put(month, Integer.parseInt(parts[1]));
+                if (parts.length > 2 && parts[2].equals(REPEATING)) repeating.add(month);
+            } catch (RuntimeException e) {
+                throw new IOException("bad manifest line '" + line + "' in " + directory);
+            }
+        }
+    }
+
+    public File segmentFile(YearMonth month) {
+        return new File(directory, month + extension);
+    }
+
+    public Set<YearMonth> months() {
+        return new TreeSet<>(counts.keySet());
+    }
+
+    public boolean hasSegment(YearMonth month) {
+        return counts.containsKey(month);
+    }
+
+    public boolean isLoaded(YearMonth month) {
+        return loaded.contains(month);
+    }
+
+    public void markLoaded(YearMonth month) {
+        loaded.add(month);
+    }
+
+    // Months in [from, to] with a segment on disk that has not been loaded yet
+    public List<YearMonth> unloaded(YearMonth from, YearMonth to) {
+        return unloaded(counts.subMap(from, true, to, true).keySet());
+    }
+
+    public List<YearMonth> unloadedFrom(YearMonth from) {
+        return unloaded(counts.tailMap(from, true).keySet());
+    }
+
+    public List<YearMonth> unloaded() {
+        return unloaded(counts.keySet());
+    }
+
+    public List<YearMonth> unloadedRepeating() {
+        return unloaded(repeating);
+    }
+
+    private List<YearMonth> unloaded(Set<YearMonth> months) {
+        List<YearMonth> result = new ArrayList<>();
+        for (YearMonth month : months) {
+            if (!loaded.contains(month)) result.add(month);
+        }
+        return result;
+    }
+
+    public void markDirty(YearMonth month) {
+        dirty.add(month);
+    }
+
+    public Set<YearMonth> takeDirty() {
+        Set<YearMonth> taken = new TreeSet<>(dirty);
+        dirty.clear();
+        return taken;
+    }
+
+    // Records the event counts of rewritten months (zero drops the month) and which of them
+    // hold repeating events, and returns the manifest to write along with them
+    public String updateCounts(Map<YearMonth, Integer> changed, Set<YearMonth> withRepeating) {
+        for (Map.Entry<YearMonth, Integer> entry : changed.entrySet()) {
+            if (entry.getValue() == 0) {
+                counts.remove(entry.getKey());
+            } else {
+                counts.put(entry.getKey(), entry.getValue());
+            }
+            if (withRepeating.contains(entry.getKey())) {
+                repeating.add(entry.getKey());
+            } else {
+                repeating.remove(entry.getKey());
+            }
+        }
+        StringBuilder text = new StringBuilder(HEADER).append('\n');
+        for (Map.Entry<YearMonth, Integer> entry : counts.entrySet()) {
+            text.append(entry.getKey()).append(' ').append(entry.getValue());
+            if (repeating.contains(entry.getKey())) text.append(' ').append(REPEATING);
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    // Written after the segments it lists, so a first conversion that is interrupted is simply
+    // run again; a month listed here whose file was already deleted reads as empty and the
+    // journal, which is only dropped once the manifest is on disk, replays over it
+    public void writeManifest(String manifest) throws IOException {
+        byte[] bytes = manifest.getBytes(StandardCharsets.UTF_8);
+        DurableWriter.shared().writeAndWait(new File(directory, MANIFEST).toPath(), channel -> {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) channel.write(buffer);
+        });
+    }
+
+    public void createDirectory() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+    }
+
+    public void deleteSegment(YearMonth month) throws IOException {
+        Files.deleteIfExists(segmentFile(month).toPath());
+    }
+
+    // Removes the blob generations no segment names any more, such as those of segments that
+    // were deleted or left behind by a save that was cut short; generations read from in this
+    // run stay
+    public void removeOrphanBlobs(BlobGeneration current) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        Set<File> segments = new HashSet<>();
+        for (File file : files) {
+            File segment = BlobStore.segmentOf(file);
+            if (segment != null) segments.add(segment);
+        }
+        for (File segment : segments) {
+            try {
+                BlobStore.retain(segment, segment.exists() ? current.of(segment) : 0);
+            } catch (IOException e) {
+                // an unreadable segment keeps its blobs
+            }
+        }
+    }
+
+    // Reads which blob generation a segment file refers to, 0 for none
+    interface BlobGeneration {
+        long of(File segment) throws IOException;
+    }
+
+    public static void deleteAll(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,127 @@
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+// The occurrences of repeating items (series). Each series is
+// kept once, indexed over the whole time it repeats, and only expanded for the months a
+// query touches. Expanded months are cached, least recently used dropped first, so a daily
+// series over ten years costs one item plus the occurrences of the months on screen. Any
+// change to a series drops the cache. Plugged into an IntervalIndex, occurrences show up in
+// its queries as if they were items of their own.
+class Occurrences<T> implements IntervalIndex.Source<T> {
+    private static final int CACHED_MONTHS = 12;
+    private static final LocalDateTime FOREVER = LocalDate.of(9999, 12, 31).atStartOfDay();
+
+    private final Function<T, LocalDateTime> start;
+    private final Function<T, LocalDateTime> end;
+    private final Function<T, RecurrenceRule> rule;
+    private final BiFunction<T, LocalDateTime, T> occurrence;
+    private final IntervalIndex<T> series;
+    private final Map<YearMonth, List<Occurrence<T>>> months = new LinkedHashMap<YearMonth, List<Occurrence<T>>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<YearMonth, List<Occurrence<T>>> eldest) {
+            return size() > CACHED_MONTHS;
+        }
+    };
+
+    // occurrence makes the item standing for the occurrence of a series starting at the given time
+    Occurrences(Function<T, LocalDateTime> start, Function<T, LocalDateTime> end,
+            Function<T, RecurrenceRule> rule, BiFunction<T, LocalDateTime, T> occurrence) {
+        this.start = start;
+        this.end = end;
+        this.rule = rule;
+        this.occurrence = occurrence;
+        this.series = new IntervalIndex<>(start, this::lastEnd);
+    }
+
+    public void add(T item) {
+        series.add(item);
+        months.clear();
+    }
+
+    public boolean remove(T item) {
+        if (!series.remove(item)) return false;
+        months.clear();
+        return true;
+    }
+
+    public void update(T item) {
+        if (remove(item)) add(item);
+    }
+
+    public void clear() {
+        series.clear();
+        months.clear();
+    }
+
+    public int size() {
+        return series.size();
+    }
+
+    // Occurrences overlapping [from, to) other than those of the ignored series, ordered by
+    // start. A month's occurrences include those running into it from the month before, so
+    // after the first month only the ones starting in a month are taken from it.
+    @Override
+    public List<T> overlapping(LocalDateTime from, LocalDateTime to, T ignore) {
+        List<T> result = new ArrayList<>();
+        if (series.size() == 0 || !from.isBefore(to)) return result;
+        YearMonth first = YearMonth.from(from);
+        YearMonth last = YearMonth.from(to.minusNanos(1));
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            LocalDateTime monthStart = month.atDay(1).atStartOfDay();
+            for (Occurrence<T> o : expanded(month)) {
+                if (o.series == ignore || !o.start.isBefore(to) || !o.end.isAfter(from)) continue;
+                if (month.equals(first) || !o.start.isBefore(monthStart)) result.add(o.item);
+            }
+        }
+        return result;
+    }
+
+    private List<Occurrence<T>> expanded(YearMonth month) {
+        List<Occurrence<T>> cached = months.get(month);
+        if (cached != null) return cached;
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        List<Occurrence<T>> expanded = new ArrayList<>();
+        for (T item : series.overlapping(from, to)) {
+            LocalDateTime first = start.apply(item);
+            Duration length = Duration.between(first, end.apply(item));
+            // Occurrences cover at least a second, as items of the index do
+            Duration covered = length.isZero() || length.isNegative() ? Duration.ofSeconds(1) : length;
+            for (LocalDateTime at : rule.apply(item).starts(first, length, from, to)) {
+                expanded.add(new Occurrence<>(item, occurrence.apply(item, at), at, at.plus(covered)));
+            }
+        }
+        expanded.sort(Comparator.comparing(o -> o.start));
+        months.put(month, expanded);
+        return expanded;
+    }
+
+    private LocalDateTime lastEnd(T item) {
+        LocalDateTime first = start.apply(item);
+        LocalDateTime last = rule.apply(item).lastEnd(first, Duration.between(first, end.apply(item)));
+        return last != null ? last : FOREVER;
+    }
+
+    private static class Occurrence<T> {
+        final T series;
+        final T item;
+        final LocalDateTime start;
+        final LocalDateTime end;
+
+        Occurrence(T series, T item, LocalDateTime start, LocalDateTime end) {
+            this.series = series;
+            this.item = item;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+// How an event repeats: every interval days, weeks or months
+// from the first occurrence, optionally ending after count occurrences or on a date, with
+// single dates left out. Occurrence k is computed from the first one directly, so a window
+// far into a long series is reached without walking the occurrences before it. A monthly
+// series started on the 29th to 31st falls on the last day of shorter months. Rules are
+// immutable and stored as one short line of text.
+final class RecurrenceRule {
+    enum Frequency {
+        DAILY("day"), WEEKLY("week"), MONTHLY("month");
+
+        private final String unit;
+
+        Frequency(String unit) {
+            this.unit = unit;
+        }
+    }
+
+    private final Frequency frequency;
+    private final int interval;
+    private final int count;
+    private final LocalDate until;
+    private final SortedSet<LocalDate> exceptions;
+
+    // count 0 and until null mean no limit
+    RecurrenceRule(Frequency frequency, int interval, int count, LocalDate until, Collection<LocalDate> exceptions) {
+        if (frequency == null) throw new IllegalArgumentException("no frequency");
+        if (interval < 1) throw new IllegalArgumentException("interval must be at least 1");
+        if (count < 0) throw new IllegalArgumentException("count must not be negative");
+        this.frequency = frequency;
+        this.interval = interval;
+        this.count = count;
+        this.until = until;
+        this.exceptions = Collections.unmodifiableSortedSet(new TreeSet<>(exceptions));
+    }
+
+    public Frequency getFrequency() { return frequency; }
+    public int getInterval() { return interval; }
+    public int getCount() { return count; }
+    public LocalDate getUntil() { return until; }
+    public SortedSet<LocalDate> getExceptions() { return exceptions; }
+
+    // The same rule with the occurrence on date left out
+    public RecurrenceRule except(LocalDate date) {
+        List<LocalDate> dates = new ArrayList<>(exceptions);
+        dates.add(date);
+        return new RecurrenceRule(frequency, interval, count, until, dates);
+    }
+
+    public boolean isBounded() {
+        return count > 0 || until != null;
+    }
+
+    // Start of occurrence k, counting exceptions
+    public LocalDateTime occurrence(LocalDateTime first, long k) {
+        switch (frequency) {
+            case DAILY: return first.plusDays(k * interval);
+            case WEEKLY: return first.plusWeeks(k * interval);
+            default: return first.plusMonths(k * interval);
+        }
+    }
+
+    // Starts of the occurrences lasting length that overlap [from, to), earliest first; like
+    // IntervalIndex, an occurrence covers at least one second
+    public List<LocalDateTime> starts(LocalDateTime first, Duration length, LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> result = new ArrayList<>();
+        long seconds = Math.max(1, length.getSeconds() + (length.getNano() > 0 ? 1 : 0));
+        LocalDateTime reach = from.minusSeconds(seconds);
+        for (long k = firstCandidate(first, reach); count == 0 || k < count; k++) {
+            LocalDateTime start = occurrence(first, k);
+            if (!start.isBefore(to) || (until != null && start.toLocalDate().isAfter(until))) break;
+            if (start.isAfter(reach) && !exceptions.contains(start.toLocalDate())) result.add(start);
+        }
+        return result;
+    }
+
+    // Start of the first occurrence after the given time, or null when the series is over
+    public LocalDateTime next(LocalDateTime first, LocalDateTime after) {
+        for (long k = firstCandidate(first, after); count == 0 || k < count; k++) {
+            LocalDateTime start = occurrence(first, k);
+            if (until != null && start.toLocalDate().isAfter(until)) return null;
+            if (start.isAfter(after) && !exceptions.contains(start.toLocalDate())) return start;
+        }
+        return null;
+    }
+
+    // End of the last occurrence, or null when the series goes on forever
+    public LocalDateTime lastEnd(LocalDateTime first, Duration length) {
+        if (!isBounded()) return null;
+        long last = count > 0 ? count - 1 : Long.MAX_VALUE;
+        if (until != null) {
+            long k;
+            if (frequency == Frequency.MONTHLY) {
+                k = Math.floorDiv(ChronoUnit.MONTHS.between(first.toLocalDate().withDayOfMonth(1), until.withDayOfMonth(1)), interval);
+                while (k > 0 && occurrence(first, k).toLocalDate().isAfter(until)) k--;
+            } else {
+                k = Math.floorDiv(ChronoUnit.DAYS.between(first.toLocalDate(), until), stepDays());
+            }
+            last = Math.min(last, Math.max(0, k));
+        }
+        return occurrence(first, last).plus(length);
+    }
+
+    // The lowest k whose occurrence could start after reach; never too high, at most a few too low
+    private long firstCandidate(LocalDateTime first, LocalDateTime reach) {
+        if (!reach.isAfter(first)) return 0;
+        if (frequency == Frequency.MONTHLY) {
+            long months = ChronoUnit.MONTHS.between(first.toLocalDate().withDayOfMonth(1), reach.toLocalDate().withDayOfMonth(1));
+            return Math.max(0, months / interval - 1);
+        }
+        long elapsed = reach.toEpochSecond(ZoneOffset.UTC) - first.toEpochSecond(ZoneOffset.UTC);
+        return Math.max(0, elapsed / (stepDays() * 24 * 60 * 60) - 1);
+    }
+
+    private long stepDays() {
+        return frequency == Frequency.WEEKLY ? 7L * interval : interval;
+    }
+
+    // frequency;interval;count;until;exception,exception...
+    public String encode() {
+        StringBuilder text = new StringBuilder()
+            .append(frequency).append(';').append(interval).append(';').append(count).append(';');
+        if (until != null) text.append(until);
+        text.append(';');
+        boolean separate = false;
+        for (LocalDate date : exceptions) {
+            if (separate) text.append(',');
+            text.append(date);
+            separate = true;
+        }
+        return text.toString();
+    }
+
+    // Throws IllegalArgumentException for text that encode() did not produce
+    public static RecurrenceRule decode(String text) {
+        String[] parts = text.split(";", -1);
+        if (parts.length != 5) throw new IllegalArgumentException("bad recurrence rule '" + text + "'");
+        try {
+            List<LocalDate> exceptions = new ArrayList<>();
+            if (!parts[4].isEmpty()) {
+                for (String date : parts[4].split(",")) exceptions.add(LocalDate.parse(date));
+            }
+            return new RecurrenceRule(Frequency.valueOf(parts[0]), Integer.parseInt(parts[1]),
+                Integer.parseInt(parts[2]), parts[3].isEmpty() ? null : LocalDate.parse(parts[3]), exceptions);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("bad recurrence rule '" + text + "'", e);
+        }
+    }
+
+    // For display, e.g. "Every 2 weeks, 10 times"
+    @Override
+    public String toString() {
+        String text = interval == 1 ? "Every " + frequency.unit : "Every " + interval + " " + frequency.unit + "s";
+        if (count > 0) text += ", " + count + " times";
+        if (until != null) text += ", until " + until;
+        return text;
+    }
+}
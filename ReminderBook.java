@@ -0,0 +1,159 @@
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// The reminders of one calendar: the queue of pending reminders,
+// the ledger of the ones already shown, kept in a file, and an alarm on the reminder engine
+// armed with the next due time only. The engine's thread takes the due reminders while the UI
+// thread changes events, so every method locks the book.
+class ReminderBook<T> {
+    private final File ledgerFile;
+    private final Function<T, String> id;
+    private final ReminderQueue<T> queue;
+    private ReminderLedger shown = new ReminderLedger();
+    private ReminderScheduler.Alarm alarm;
+    private LocalDateTime next;
+    private boolean closed;
+
+    // lead is how long before the start an item's reminder is due, null for none
+    ReminderBook(File ledgerFile, Function<T, String> id, Function<T, LocalDateTime> start,
+            Function<T, Duration> lead, Function<T, RecurrenceRule> rule) {
+        this.ledgerFile = ledgerFile;
+        this.id = id;
+        this.queue = new ReminderQueue<>(start, lead, rule, LocalDateTime.now());
+    }
+
+    // Reads the ledger and picks up where the last run left off, so reminders that fell due in
+    // between are found and the ones already shown are not shown again; returns that time, or
+    // null on a first run. Items added before are dropped.
+    public synchronized LocalDateTime load() {
+        try {
+            shown = ReminderLedger.read(ledgerFile);
+        } catch (IOException e) {
+            System.err.println("Error loading reminders: " + e.getMessage());
+            return null;
+        }
+        LocalDateTime lastRun = shown.getLastRun();
+        if (lastRun == null || !lastRun.isBefore(LocalDateTime.now())) return null;
+        queue.reset(lastRun);
+        changed();
+        return lastRun;
+    }
+
+    public synchronized void add(T item) {
+        queue.add(item);
+        changed();
+    }
+
+    public synchronized void remove(T item) {
+        queue.remove(item);
+        changed();
+    }
+
+    // Call after changing an item's times, reminder or rule
+    public synchronized void update(T item) {
+        queue.update(item);
+        changed();
+    }
+
+    public synchronized void clear() {
+        queue.clear();
+        changed();
+    }
+
+    // When the earliest pending reminder is due, or null if there is none
+    public synchronized LocalDateTime getNextDue() {
+        return next;
+    }
+
+    // Starts checking on the reminder engine; every batch found due together is passed to
+    // deliver on the engine's thread
+    public synchronized void start(Consumer<List<ReminderQueue.Reminder<T>>> deliver) {
+        if (closed) return;
+        if (alarm == null) {
+            alarm = ReminderScheduler.shared().register(now -> {
+                List<ReminderQueue.Reminder<T>> due = takeDue(now);
+                if (!due.isEmpty()) deliver.accept(due);
+            });
+        }
+        alarm.arm(next);
+    }
+
+    public synchronized void close() {
+        closed = true;
+        if (alarm != null) alarm.cancel();
+    }
+
+    // Reminders that fell due since the last check and have not been shown yet, each for one
+    // occurrence; they count as shown from here on, also after a restart. Occurrences that
+    // started while nothing was checking, because the app was closed or the machine asleep,
+    // come first as missed reminders, only the latest one per item. The following occurrences
+    // of repeating items are queued in their place.
+    public synchronized List<ReminderQueue.Reminder<T>> takeDue(LocalDateTime now) {
+        if (closed) return new ArrayList<>();
+        Map<String, ReminderQueue.Reminder<T>> missed = new LinkedHashMap<>();
+        List<ReminderQueue.Reminder<T>> upcoming = new ArrayList<>();
+        for (ReminderQueue.Reminder<T> reminder : queue.takeDue(now)) {
+            String key = id.apply(reminder.getItem());
+            if (!shown.add(key, reminder.getStart())) continue;
+            if (reminder.getStart().isAfter(now)) {
+                upcoming.add(reminder);
+            } else {
+                missed.remove(key);
+                missed.put(key, reminder);
+            }
+        }
+        shown.prune(now);
+        shown.setLastRun(now);
+        save();
+        changed();
+        List<ReminderQueue.Reminder<T>> due = new ArrayList<>(missed.values());
+        due.addAll(upcoming);
+        return due;
+    }
+
+    // Records that reminders have been handled up to now, unless one that is due has not been
+    // taken yet, and waits until the ledger is written. For when the calendar closes: checks
+    // only save when something falls due, and without this the next run would catch up, and
+    // load months, from the last time a reminder was shown.
+    public synchronized void saveProgress() {
+        LocalDateTime now = LocalDateTime.now();
+        if (closed || next != null && !next.isAfter(now)) return;
+        shown.prune(now);
+        shown.setLastRun(now);
+        CompletableFuture<Void> written = save();
+        if (written == null) return;
+        try {
+            DurableWriter.await(written, ledgerFile.getName());
+        } catch (IOException e) {
+            // reported by save()
+        }
+    }
+
+    private CompletableFuture<Void> save() {
+        File directory = ledgerFile.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Error saving reminders: cannot create " + directory);
+            return null;
+        }
+        return shown.write(ledgerFile).whenComplete((done, e) -> {
+            if (e != null) System.err.println("Error saving reminders: " + e.getMessage());
+        });
+    }
+
+    private void changed() {
+        LocalDateTime due = queue.nextDue();
+        if (Objects.equals(due, next)) return;
+        next = due;
+        if (alarm != null) alarm.arm(due);
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+// The reminders that have been shown, kept so that each occurrence
+// is reminded of once even across restarts. An entry is the event id as two longs (random
+// UUIDs as they are, other ids hashed into one) and the occurrence start in epoch seconds,
+// held in an open-addressing table of plain longs. Reminders are only shown before their
+// occurrence starts, so entries are dropped once it has, and the ledger stays as small as the
+// number of upcoming reminders already shown. It also keeps the time reminders were last
+// handled up to, which is where the next run picks up.
+//   file: magic, version, last run (epoch seconds, Long.MIN_VALUE for never), count, entries
+class ReminderLedger {
+    private static final int MAGIC = 0x4A53524C; // "JSRL"
+    private static final short VERSION = 1;
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int ENTRY_SIZE = 24;
+
+    private long[] most = new long[16];
+    private long[] least = new long[16];
+    private long[] starts = newStarts(16);
+    private int size;
+    private LocalDateTime lastRun;
+
+    // Records that the reminder for the occurrence of the event starting at start was shown;
+    // false if it already had been
+    public boolean add(String id, LocalDateTime start) {
+        UUID key = key(id);
+        long at = seconds(start);
+        if (find(key.getMostSignificantBits(), key.getLeastSignificantBits(), at) >= 0) return false;
+        if (2 * (size + 1) > starts.length) resize(2 * starts.length);
+        insert(key.getMostSignificantBits(), key.getLeastSignificantBits(), at);
+        return true;
+    }
+
+    public boolean contains(String id, LocalDateTime start) {
+        UUID key = key(id);
+        return find(key.getMostSignificantBits(), key.getLeastSignificantBits(), seconds(start)) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Drops the entries of occurrences that have started by now
+    public void prune(LocalDateTime now) {
+        long cutoff = seconds(now);
+        int live = 0;
+        for (long start : starts) {
+            if (start != EMPTY && start > cutoff) live++;
+        }
+        if (live == size) return;
+        int capacity = 16;
+        while (2 * live > capacity) capacity *= 2;
+        rebuild(capacity, cutoff);
+    }
+
+    // The time reminders have been handled up to, null before the first run
+    public LocalDateTime getLastRun() {
+        return lastRun;
+    }
+
+    public void setLastRun(LocalDateTime lastRun) {
+        this.lastRun = lastRun;
+    }
+
+    // A missing file reads as an empty ledger
+    public static ReminderLedger read(File file) throws IOException {
+        ReminderLedger ledger = new ReminderLedger();
+        if (!file.exists()) return ledger;
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if (buffer.remaining() < 18 || buffer.getInt() != MAGIC) throw new IOException(file.getName() + " is not a reminder ledger");
+        short version = buffer.getShort();
+        if (version != VERSION) throw new IOException("unsupported reminder ledger version " + version);
+        long lastRun = buffer.getLong();
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * ENTRY_SIZE != buffer.remaining()) throw new IOException(file.getName() + " is truncated");
+        ledger.lastRun = lastRun == EMPTY ? null : LocalDateTime.ofEpochSecond(lastRun, 0, ZoneOffset.UTC);
+        for (int i = 0; i < count; i++) {
+            long m = buffer.getLong();
+            long l = buffer.getLong();
+            long start = buffer.getLong();
+            if (ledger.find(m, l, start) >= 0) continue;
+            if (2 * (ledger.size + 1) > ledger.starts.length) ledger.resize(2 * ledger.starts.length);
+            ledger.insert(m, l, start);
+        }
+        return ledger;
+    }
+
+    // The contents are taken now, on the calling thread; the write itself happens in the background
+    public CompletableFuture<Void> write(File file) {
+        ByteBuffer buffer = ByteBuffer.allocate(18 + size * ENTRY_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putLong(lastRun == null ? EMPTY : seconds(lastRun));
+        buffer.putInt(size);
+        for (int i = 0; i < starts.length; i++) {
+            if (starts[i] == EMPTY) continue;
+            buffer.putLong(most[i]);
+            buffer.putLong(least[i]);
+            buffer.putLong(starts[i]);
+        }
+        buffer.flip();
+        return DurableWriter.shared().write(file.toPath(), channel -> {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        });
+    }
+
+    private int find(long m, long l, long start) {
+        int mask = starts.length - 1;
+        for (int i = slot(m, l, start, mask); starts[i] != EMPTY; i = (i + 1) & mask) {
+            if (starts[i] == start && most[i] == m && least[i] == l) return i;
+        }
+        return -1;
+    }
+
+    private void insert(long m, long l, long start) {
+        int mask = starts.length - 1;
+        int i = slot(m, l, start, mask);
+        while (starts[i] != EMPTY) i = (i + 1) & mask;
+        most[i] = m;
+        least[i] = l;
+        starts[i] = start;
+        size++;
+    }
+
+    private void resize(int capacity) {
+        rebuild(capacity, EMPTY);
+    }
+
+    // Moves the entries of occurrences starting after cutoff into a table of the given capacity
+    private void rebuild(int capacity, long cutoff) {
+        long[] oldMost = most;
+        long[] oldLeast = least;
+        long[] oldStarts = starts;
+        most = new long[capacity];
+        least = new long[capacity];
+        starts = newStarts(capacity);
+        size = 0;
+        for (int i = 0; i < oldStarts.length; i++) {
+            if (oldStarts[i] != EMPTY && oldStarts[i] > cutoff) insert(oldMost[i], oldLeast[i], oldStarts[i]);
+        }
+    }
+
+    private static int slot(long m, long l, long start, int mask) {
+        long h = (m * 31 + l) * 31 + start;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    private static long[] newStarts(int capacity) {
+        long[] starts = new long[capacity];
+        Arrays.fill(starts, EMPTY);
+        return starts;
+    }
+
+    private static UUID key(String id) {
+        try {
+            UUID uuid = UUID.fromString(id);
+            if (uuid.toString().equals(id)) return uuid;
+        } catch (IllegalArgumentException e) {
+            // not a UUID the applications generated
+        }
+        return UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long seconds(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+}
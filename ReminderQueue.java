@@ -0,0 +1,134 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+// Pending reminders ordered by when they are due. Every item
+// with a reminder has exactly one entry: its next occurrence after the watermark, which is
+// the time reminders have been handled up to. Taking the due entries moves the watermark and
+// files the following occurrence of repeating items, so the owner only ever has to wake at
+// nextDue() instead of scanning all items. Entries are remembered per item (by identity);
+// call update() after changing an item's times, reminder or rule. The start, lead and rule
+// are read when an item is added or updated and kept with its entry, so taking the due
+// entries on another thread never reads an item that may be being edited.
+class ReminderQueue<T> {
+    private static final Comparator<Entry<?>> ORDER =
+        Comparator.<Entry<?>, LocalDateTime>comparing(e -> e.due).thenComparingLong(e -> e.sequence);
+
+    private final Function<T, LocalDateTime> start;
+    private final Function<T, Duration> lead;
+    private final Function<T, RecurrenceRule> rule;
+    private final TreeSet<Entry<T>> queue = new TreeSet<>(ORDER);
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private LocalDateTime since;
+    private long sequence;
+
+    // lead is how long before the start an item's reminder is due, null for none
+    ReminderQueue(Function<T, LocalDateTime> start, Function<T, Duration> lead,
+            Function<T, RecurrenceRule> rule, LocalDateTime since) {
+        this.start = start;
+        this.lead = lead;
+        this.rule = rule;
+        this.since = since;
+    }
+
+    public void add(T item) {
+        if (entries.containsKey(item)) return;
+        Duration before = lead.apply(item);
+        if (before != null) file(item, start.apply(item), before, rule.apply(item), since);
+    }
+
+    public boolean remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry == null) return false;
+        queue.remove(entry);
+        return true;
+    }
+
+    public void update(T item) {
+        remove(item);
+        add(item);
+    }
+
+    public void clear() {
+        queue.clear();
+        entries.clear();
+    }
+
+    // Drops every entry and goes on from the given watermark; items have to be added again
+    public void reset(LocalDateTime watermark) {
+        clear();
+        since = watermark;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // When the earliest pending reminder is due, or null if there is none
+    public LocalDateTime nextDue() {
+        return queue.isEmpty() ? null : queue.first().due;
+    }
+
+    // The reminders due by now, earliest first, including those of occurrences that have
+    // already started; the watermark moves to now
+    public List<Reminder<T>> takeDue(LocalDateTime now) {
+        List<Reminder<T>> due = new ArrayList<>();
+        while (!queue.isEmpty() && !queue.first().due.isAfter(now)) {
+            Entry<T> entry = queue.pollFirst();
+            entries.remove(entry.item);
+            due.add(new Reminder<>(entry.item, entry.start));
+            file(entry.item, entry.first, entry.lead, entry.rule, entry.start);
+        }
+        if (now.isAfter(since)) since = now;
+        return due;
+    }
+
+    // Files the occurrence of the item starting first after the given time
+    private void file(T item, LocalDateTime first, Duration before, RecurrenceRule repeat, LocalDateTime after) {
+        LocalDateTime next = repeat != null ? repeat.next(first, after) : first.isAfter(after) ? first : null;
+        if (next == null) return;
+        Entry<T> entry = new Entry<>(item, first, before, repeat, next, sequence++);
+        entries.put(item, entry);
+        queue.add(entry);
+    }
+
+    static class Reminder<T> {
+        private final T item;
+        private final LocalDateTime start;
+
+        Reminder(T item, LocalDateTime start) {
+            this.item = item;
+            this.start = start;
+        }
+
+        public T getItem() { return item; }
+        // Start of the occurrence the reminder is for
+        public LocalDateTime getStart() { return start; }
+    }
+
+    private static class Entry<T> {
+        final T item;
+        final LocalDateTime first;
+        final Duration lead;
+        final RecurrenceRule rule;
+        final LocalDateTime start;
+        final LocalDateTime due;
+        final long sequence;
+
+        Entry(T item, LocalDateTime first, Duration lead, RecurrenceRule rule, LocalDateTime start, long sequence) {
+            this.item = item;
+            this.first = first;
+            this.lead = lead;
+            this.rule = rule;
+            this.start = start;
+            this.due = start.minus(lead);
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// The reminder engine: one background thread that works out
+// which reminders are due, so the UI thread only ever shows them. Each calendar registers an
+// Alarm and arms it with the time its next reminder is due; only that one time is scheduled
+// per calendar, and arming again replaces it. Sleeps last at most a minute and the due time
+// is compared against the wall clock, so after the machine wakes up or the clock is changed
+// whatever fell due in between is caught up within a minute.
+class ReminderScheduler {
+    private static final long MAX_SLEEP_MS = 60 * 1000;
+    private static final ReminderScheduler SHARED = new ReminderScheduler();
+
+    private final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "reminders");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private ReminderScheduler() {
+        // Arming again cancels the previous wakeup, which should not linger in the queue
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    public static ReminderScheduler shared() {
+        return SHARED;
+    }
+
+    // check runs on the engine thread with the current time once the armed time has come
+    public Alarm register(Consumer<LocalDateTime> check) {
+        return new Alarm(check);
+    }
+
+    class Alarm {
+        private final Consumer<LocalDateTime> check;
+        private LocalDateTime due;
+        private ScheduledFuture<?> pending;
+        private long generation;
+
+        private Alarm(Consumer<LocalDateTime> check) {
+            this.check = check;
+        }
+
+        // Replaces the armed time; null disarms
+        public synchronized void arm(LocalDateTime due) {
+            this.due = due;
+            long armed = ++generation;
+            if (pending != null) pending.cancel(false);
+            pending = null;
+            if (due == null) return;
+            long delay = Duration.between(LocalDateTime.now(), due).toMillis();
+            pending = executor.schedule(() -> fire(armed), Math.max(0, Math.min(delay, MAX_SLEEP_MS)), TimeUnit.MILLISECONDS);
+        }
+
+        public void cancel() {
+            arm(null);
+        }
+
+        private void fire(long armed) {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime at;
+            synchronized (this) {
+                if (armed != generation) return;
+                at = due;
+            }
+            if (!now.isBefore(at)) {
+                try {
+                    check.accept(now);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            synchronized (this) {
+                // Not armed again by the check: the time has not come yet, or is still the next one
+                if (armed == generation && due.isAfter(now)) arm(due);
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.AbstractList;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+// A collection kept in sorted order as it changes. It is a treap
+// where every node knows the size of its subtree, so adding or removing an item and finding
+// the item at a position all take O(log n). Nodes are found by identity and removed through
+// their parent links without comparing, so an item that was changed in place can still be
+// taken out; call update() after changing the fields the order depends on. Equal items keep
+// the order they were added in.
+class SortedView<T> {
+    private final Comparator<? super T> order;
+    private final Map<T, Node<T>> nodes = new IdentityHashMap<>();
+    private final Random random = new Random();
+    private final View view = new View();
+    private Node<T> root;
+    private long sequence;
+
+    SortedView(Comparator<? super T> order) {
+        this.order = order;
+    }
+
+    public void add(T item) {
+        if (nodes.containsKey(item)) return;
+        Node<T> node = new Node<>(item, sequence++, random.nextInt());
+        nodes.put(item, node);
+        insert(node);
+        view.changed();
+    }
+
+    public boolean remove(T item) {
+        Node<T> node = nodes.remove(item);
+        if (node == null) return false;
+        unlink(node);
+        view.changed();
+        return true;
+    }
+
+    public void update(T item) {
+        Node<T> node = nodes.get(item);
+        if (node == null) return;
+        unlink(node);
+        node.left = node.right = node.parent = null;
+        node.size = 1;
+        insert(node);
+        view.changed();
+    }
+
+    public void clear() {
+        nodes.clear();
+        root = null;
+        view.changed();
+    }
+
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    // A read-only live view in sorted order; iterating it while the collection changes fails
+    public List<T> asList() {
+        return view;
+    }
+
+    private void insert(Node<T> node) {
+        if (root == null) {
+            root = node;
+            return;
+        }
+        Node<T> at = root;
+        while (true) {
+            at.size++;
+            if (before(node, at)) {
+                if (at.left == null) { at.left = node; break; }
+                at = at.left;
+            } else {
+                if (at.right == null) { at.right = node; break; }
+                at = at.right;
+            }
+        }
+        node.parent = at;
+        while (node.parent != null && node.priority > node.parent.priority) rotateUp(node);
+    }
+
+    // Rotates the node down until it is a leaf, then cuts it off
+    private void unlink(Node<T> node) {
+        while (node.left != null || node.right != null) {
+            Node<T> child = node.left == null ? node.right
+                : node.right == null ? node.left
+                : node.left.priority > node.right.priority ? node.left : node.right;
+            rotateUp(child);
+        }
+        Node<T> parent = node.parent;
+        if (parent == null) {
+            root = null;
+            return;
+        }
+        if (parent.left == node) parent.left = null; else parent.right = null;
+        for (Node<T> n = parent; n != null; n = n.parent) n.size--;
+    }
+
+    private boolean before(Node<T> a, Node<T> b) {
+        int c = order.compare(a.item, b.item);
+        return c < 0 || (c == 0 && a.sequence < b.sequence);
+    }
+
+    private void rotateUp(Node<T> node) {
+        Node<T> parent = node.parent;
+        Node<T> grandparent = parent.parent;
+        if (parent.left == node) {
+            parent.left = node.right;
+            if (node.right != null) node.right.parent = parent;
+            node.right = parent;
+        } else {
+            parent.right = node.left;
+            if (node.left != null) node.left.parent = parent;
+            node.left = parent;
+        }
+        parent.parent = node;
+        node.parent = grandparent;
+        if (grandparent == null) {
+            root = node;
+        } else if (grandparent.left == parent) {
+            grandparent.left = node;
+        } else {
+            grandparent.right = node;
+        }
+        parent.resize();
+        node.resize();
+    }
+
+    private Node<T> nodeAt(int index) {
+        Node<T> node = root;
+        while (true) {
+            int left = size(node.left);
+            if (index < left) {
+                node = node.left;
+            } else if (index == left) {
+                return node;
+            } else {
+                index -= left + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    private static <T> int size(Node<T> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static <T> Node<T> first(Node<T> node) {
+        while (node != null && node.left != null) node = node.left;
+        return node;
+    }
+
+    private static <T> Node<T> next(Node<T> node) {
+        if (node.right != null) return first(node.right);
+        while (node.parent != null && node.parent.right == node) node = node.parent;
+        return node.parent;
+    }
+
+    private class View extends AbstractList<T> {
+        void changed() {
+            modCount++;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            return nodeAt(index).item;
+        }
+
+        @Override
+        public int size() {
+            return SortedView.this.size();
+        }
+
+        // Walks the nodes in order rather than looking up every position
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private final int expected = modCount;
+                private Node<T> next = first(root);
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public T next() {
+                    if (modCount != expected) throw new ConcurrentModificationException();
+                    if (next == null) throw new NoSuchElementException();
+                    T item = next.item;
+                    next = SortedView.next(next);
+                    return item;
+                }
+            };
+        }
+    }
+
+    private static class Node<T> {
+        final T item;
+        final long sequence;
+        final int priority;
+        int size = 1;
+        Node<T> left;
+        Node<T> right;
+        Node<T> parent;
+
+        Node(T item, long sequence, int priority) {
+            this.item = item;
+            this.sequence = sequence;
+            this.priority = priority;
+        }
+
+        void resize() {
+            size = 1 + SortedView.size(left) + SortedView.size(right);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Inverted index for event search. Text is split into lowercase
+// words; each word maps to a sorted posting list of dense item ordinals, and the words are
+// kept sorted so that a query word matches every indexed word it is a prefix of. An item
+// matches when each query word does. The words an item was filed under are remembered, so
+// items changed in place can be re-filed, and queries reuse their buffers between calls.
+//
+// For fuzzy queries the distinct words are also filed by their trigrams. A query word's
+// trigrams select candidate words, which are then ranked by how they match: as a prefix, as
+// a fragment, or within a couple of typos of the start of the word. Only the vocabulary is
+// filed this way, so the trigram lists stay small however many items there are.
+class TextIndex<T> {
+    private static final int PREFIX = 0;
+    private static final int FRAGMENT = 1;
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private final TreeMap<String, Word> words = new TreeMap<>();
+    private final List<Word> wordsById = new ArrayList<>();
+    private final IntStack freeWordIds = new IntStack();
+    private final Map<Long, IntSet> trigrams = new HashMap<>();
+    private final Map<T, Entry> entries = new IdentityHashMap<>();
+    private final List<T> items = new ArrayList<>();
+    private final IntStack freeOrdinals = new IntStack();
+
+    private long[] matches = new long[0];
+    private long[] wordMatches = new long[0];
+    private int[] shared = new int[0];
+    private int[] wordScore = new int[0];
+    private int[] score = new int[0];
+    private int[] matched = new int[0];
+    private final IntStack touched = new IntStack();
+    private final IntStack candidates = new IntStack();
+    private int[][] rows = new int[3][0];
+
+    // Splits the fields into distinct lowercase words; null fields are skipped
+    static String[] words(String... fields) {
+        Set<String> result = new LinkedHashSet<>();
+        StringBuilder word = new StringBuilder();
+        for (String field : fields) {
+            if (field == null) continue;
+            for (int i = 0; i <= field.length(); i++) {
+                char c = i < field.length() ? field.charAt(i) : ' ';
+                if (Character.isLetterOrDigit(c)) {
+                    word.append(Character.toLowerCase(c));
+                } else if (word.length() > 0) {
+                    result.add(word.toString());
+                    word.setLength(0);
+                }
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    public void add(T item, String[] itemWords) {
+        if (entries.containsKey(item)) return;
+        int ordinal;
+        if (freeOrdinals.size > 0) {
+            ordinal = freeOrdinals.pop();
+            items.set(ordinal, item);
+        } else {
+            ordinal = items.size();
+            items.add(item);
+        }
+        Word[] filed = new Word[itemWords.length];
+        for (int i = 0; i < itemWords.length; i++) {
+            filed[i] = words.computeIfAbsent(itemWords[i], this::newWord);
+            filed[i].items.add(ordinal);
+        }
+        entries.put(item, new Entry(ordinal, filed));
+    }
+
+    public boolean remove(T item) {
+        Entry entry = entries.remove(item);
+        if (entry == null) return false;
+        for (Word word : entry.words) {
+            word.items.remove(entry.ordinal);
+            if (word.items.size == 0) dropWord(word);
+        }
+        items.set(entry.ordinal, null);
+        freeOrdinals.push(entry.ordinal);
+        return true;
+    }
+
+    public void update(T item, String[] itemWords) {
+        remove(item);
+        add(item, itemWords);
+    }
+
+    public void clear() {
+        words.clear();
+        wordsById.clear();
+        freeWordIds.size = 0;
+        trigrams.clear();
+        entries.clear();
+        items.clear();
+        freeOrdinals.size = 0;
+    }
+
+    // Items matching every word of the query, in ordinal order; empty if the query has no words
+    public List<T> search(String query) {
+        String[] queryWords = words(query);
+        List<T> result = new ArrayList<>();
+        if (queryWords.length == 0) return result;
+        int length = (items.size() + 63) >>> 6;
+        if (matches.length < length) {
+            matches = new long[length];
+            wordMatches = new long[length];
+        }
+        for (int w = 0; w < queryWords.length; w++) {
+            long[] target = w == 0 ? matches : wordMatches;
+            Arrays.fill(target, 0, length, 0L);
+            for (Word word : prefixed(queryWords[w])) {
+                word.items.addTo(target);
+            }
+            if (w > 0) {
+                for (int i = 0; i < length; i++) matches[i] &= wordMatches[i];
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            for (long bits = matches[i]; bits != 0; bits &= bits - 1) {
+                result.add(items.get((i << 6) + Long.numberOfTrailingZeros(bits)));
+            }
+        }
+        return result;
+    }
+
+    // Items matching every word of the query approximately, best matches first and equally
+    // good ones in the given order. Each query word scores its best match within an item:
+    // 0 as a prefix, 1 as a fragment, and 1 + the number of typos otherwise.
+    public List<T> searchFuzzy(String query, Comparator<? super T> order) {
+        String[] queryWords = words(query);
+        List<T> result = new ArrayList<>();
+        if (queryWords.length == 0) return result;
+        int count = items.size();
+        if (score.length < count) {
+            score = new int[count];
+            matched = new int[count];
+            wordScore = new int[count];
+            Arrays.fill(wordScore, NO_MATCH);
+        }
+        Arrays.fill(matched, 0, count, 0);
+        for (int w = 0; w < queryWords.length; w++) {
+            touched.size = 0;
+            String q = queryWords[w];
+            if (q.length() < 3) {
+                for (Word word : prefixed(q)) scoreItems(word, PREFIX);
+            } else {
+                findCandidates(q);
+                int limit = q.length() <= 4 ? 1 : 2;
+                for (int i = 0; i < candidates.size; i++) {
+                    Word word = wordsById.get(candidates.values[i]);
+                    int s = match(q, word.text, limit);
+                    if (s != NO_MATCH) scoreItems(word, s);
+                }
+            }
+            for (int i = 0; i < touched.size; i++) {
+                int ordinal = touched.values[i];
+                if (matched[ordinal] == w) {
+                    score[ordinal] = w == 0 ? wordScore[ordinal] : score[ordinal] + wordScore[ordinal];
+                    matched[ordinal]++;
+                }
+                wordScore[ordinal] = NO_MATCH;
+            }
+        }
+        // Every surviving item was touched by the last word. Scores are small, so the items are
+        // bucketed by score and only each bucket is sorted.
+        List<List<T>> byScore = new ArrayList<>();
+        for (int i = 0; i < touched.size; i++) {
+            int ordinal = touched.values[i];
+            if (matched[ordinal] != queryWords.length) continue;
+            while (byScore.size() <= score[ordinal]) byScore.add(new ArrayList<>());
+            byScore.get(score[ordinal]).add(items.get(ordinal));
+        }
+        for (List<T> bucket : byScore) {
+            bucket.sort(order);
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    private Iterable<Word> prefixed(String prefix) {
+        return words.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+    }
+
+    private void scoreItems(Word word, int s) {
+        IntSet ordinals = word.items;
+        for (int i = 0; i < ordinals.size; i++) {
+            int ordinal = ordinals.values[i];
+            if (wordScore[ordinal] == NO_MATCH) touched.push(ordinal);
+            if (s < wordScore[ordinal]) wordScore[ordinal] = s;
+        }
+    }
+
+    // Words sharing enough trigrams with q to possibly be within the typo limit; a single
+    // typo changes at most four of the trigrams around it (three, or four for a swap)
+    private void findCandidates(String q) {
+        candidates.size = 0;
+        if (shared.length < wordsById.size()) shared = new int[wordsById.size()];
+        Set<Long> queryTrigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= q.length(); i++) queryTrigrams.add(trigram(q, i));
+        int needed = Math.max(1, queryTrigrams.size() - 4 * (q.length() <= 4 ? 1 : 2));
+        for (Long key : queryTrigrams) {
+            IntSet ids = trigrams.get(key);
+            if (ids == null) continue;
+            for (int i = 0; i < ids.size; i++) {
+                int id = ids.values[i];
+                if (shared[id]++ == 0) candidates.push(id);
+            }
+        }
+        int kept = 0;
+        for (int i = 0; i < candidates.size; i++) {
+            int id = candidates.values[i];
+            if (shared[id] >= needed) candidates.values[kept++] = id;
+            shared[id] = 0;
+        }
+        candidates.size = kept;
+    }
+
+    private int match(String q, String word, int limit) {
+        if (word.startsWith(q)) return PREFIX;
+        if (word.contains(q)) return FRAGMENT;
+        int typos = prefixDistance(q, word, limit);
+        return typos <= limit ? FRAGMENT + typos : NO_MATCH;
+    }
+
+    // The fewest edits (insertions, deletions, substitutions or swaps of neighbours) that turn
+    // q into some prefix of word, or limit + 1 once that is certain to exceed the limit
+    private int prefixDistance(String q, String word, int limit) {
+        int n = Math.min(word.length(), q.length() + limit);
+        if (rows[0].length < n + 1) rows = new int[3][n + 1];
+        int[] before = rows[0], previous = rows[1], current = rows[2];
+        for (int j = 0; j <= n; j++) previous[j] = j;
+        for (int i = 1; i <= q.length(); i++) {
+            current[0] = i;
+            int best = i;
+            for (int j = 1; j <= n; j++) {
+                int cost = q.charAt(i - 1) == word.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && q.charAt(i - 1) == word.charAt(j - 2) && q.charAt(i - 2) == word.charAt(j - 1)) {
+                    d = Math.min(d, before[j - 2] + 1);
+                }
+                current[j] = d;
+                best = Math.min(best, d);
+            }
+            if (best > limit) return limit + 1;
+            int[] recycled = before;
+            before = previous;
+            previous = current;
+            current = recycled;
+        }
+        int best = limit + 1;
+        for (int j = 0; j <= n; j++) best = Math.min(best, previous[j]);
+        return best;
+    }
+
+    private Word newWord(String text) {
+        int id;
+        if (freeWordIds.size > 0) {
+            id = freeWordIds.pop();
+        } else {
+            id = wordsById.size();
+            wordsById.add(null);
+        }
+        Word word = new Word(text, id);
+        wordsById.set(id, word);
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.computeIfAbsent(trigram(text, i), k -> new IntSet()).add(id);
+        }
+        return word;
+    }
+
+    private void dropWord(Word word) {
+        words.remove(word.text);
+        for (int i = 0; i + 3 <= word.text.length(); i++) {
+            Long key = trigram(word.text, i);
+            IntSet ids = trigrams.get(key);
+            if (ids == null) continue;
+            ids.remove(word.id);
+            if (ids.size == 0) trigrams.remove(key);
+        }
+        wordsById.set(word.id, null);
+        freeWordIds.push(word.id);
+    }
+
+    private static long trigram(String text, int at) {
+        return ((long) text.charAt(at) << 32) | ((long) text.charAt(at + 1) << 16) | text.charAt(at + 2);
+    }
+
+    private static class Entry {
+        final int ordinal;
+        final Word[] words;
+
+        Entry(int ordinal, Word[] words) {
+            this.ordinal = ordinal;
+            this.words = words;
+        }
+    }
+
+    private static class Word {
+        final String text;
+        final int id;
+        final IntSet items = new IntSet();
+
+        Word(String text, int id) {
+            this.text = text;
+            this.id = id;
+        }
+    }
+
+    // Sorted set of ints in a plain array, used for both kinds of posting list
+    private static class IntSet {
+        int[] values = new int[2];
+        int size;
+
+        void add(int value) {
+            int at = Arrays.binarySearch(values, 0, size, value);
+            if (at >= 0) return;
+            at = -at - 1;
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            System.arraycopy(values, at, values, at + 1, size - at);
+            values[at] = value;
+            size++;
+        }
+
+        void remove(int value) {
+            int at = Arrays.binarySearch(values, 0, size, value);
+            if (at < 0) return;
+            System.arraycopy(values, at + 1, values, at, size - at - 1);
+            size--;
+        }
+
+        void addTo(long[] bits) {
+            for (int i = 0; i < size; i++) {
+                bits[values[i] >>> 6] |= 1L << values[i];
+            }
+        }
+    }
+
+    private static class IntStack {
+        int[] values = new int[16];
+        int size;
+
+        void push(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int pop() { return values[--size]; }
+    }
+}